@@ -10,8 +10,16 @@ import sys
 import tempfile
 
 
+# The name a grammar is loaded by, e.g. "typescript" for tree-sitter-typescript/typescript or "c-sharp" for
+# tree-sitter-c-sharp.
+def grammar_name(repository):
+    return os.path.split(repository.rstrip("/"))[1].split("tree-sitter-")[-1]
+
+
 # adapted from https://github.com/tree-sitter/py-tree-sitter
-def build(repositories, output_path="libjava-tree-sitter", arch=None, verbose=True):
+# With grammar_only, only the grammars are compiled, without the tree-sitter runtime or the JNI bindings, into a
+# library that LanguageRegistry can load on demand.
+def build(repositories, output_path="libjava-tree-sitter", arch=None, verbose=True, grammar_only=False):
     log.set_verbosity(2)
     if arch and platform.system() != "Darwin":
         arch = "64" if "64" in arch else "32"
@@ -26,20 +34,24 @@ def build(repositories, output_path="libjava-tree-sitter", arch=None, verbose=Tr
             else f"CFLAGS='-m{arch}' LDFLAGS='-m{arch}'"
         )
 
-    os.system(
-        f"make -C \"{os.path.join(here, 'tree-sitter')}\" clean {'> /dev/null' if not verbose else ''}"
-    )
-    os.system(
-        f"{env} make -C \"{os.path.join(here, 'tree-sitter')}\" {'> /dev/null' if not verbose else ''}"
-    )
+    if not grammar_only:
+        os.system(
+            f"make -C \"{os.path.join(here, 'tree-sitter')}\" clean {'> /dev/null' if not verbose else ''}"
+        )
+        os.system(
+            f"{env} make -C \"{os.path.join(here, 'tree-sitter')}\" {'> /dev/null' if not verbose else ''}"
+        )
 
     cpp = False
-    source_paths = [
+    source_paths = [] if grammar_only else [
         os.path.join(here, "lib", "ai_serenade_treesitter_TreeSitter.cc"),
         os.path.join(here, "lib", "ai_serenade_treesitter_Languages.cc"),
     ]
 
     compiler = distutils.ccompiler.new_compiler()
+    # The bindings dlopen grammar libraries for LanguageRegistry.
+    if not grammar_only and platform.system() == "Linux":
+        compiler.add_library("dl")
     for repository in repositories:
         src_path = os.path.join(repository, "src")
         source_paths.append(os.path.join(src_path, "parser.c"))
@@ -52,7 +64,7 @@ def build(repositories, output_path="libjava-tree-sitter", arch=None, verbose=Tr
             source_paths.append(scanner_c)
 
         compiler.define_macro(
-            f"TS_LANGUAGE_{os.path.split(repository.rstrip('/'))[1].split('tree-sitter-')[-1].replace('-', '_').upper()}",
+            f"TS_LANGUAGE_{grammar_name(repository).replace('-', '_').upper()}",
             "1",
         )
 
@@ -86,13 +98,14 @@ def build(repositories, output_path="libjava-tree-sitter", arch=None, verbose=Tr
             include_dirs = [
                 os.path.dirname(source_path),
                 os.path.join(here, "tree-sitter", "lib", "include"),
-                os.path.join(os.environ["JAVA_HOME"], "include"),
             ]
 
-            if platform.system() == "Linux":
-                include_dirs.append(os.path.join(os.environ["JAVA_HOME"], "include", "linux"))
-            elif platform.system() == "Darwin":
-                include_dirs.append(os.path.join(os.environ["JAVA_HOME"], "include", "darwin"))
+            if not grammar_only:
+                include_dirs.append(os.path.join(os.environ["JAVA_HOME"], "include"))
+                if platform.system() == "Linux":
+                    include_dirs.append(os.path.join(os.environ["JAVA_HOME"], "include", "linux"))
+                elif platform.system() == "Darwin":
+                    include_dirs.append(os.path.join(os.environ["JAVA_HOME"], "include", "darwin"))
 
             object_paths.append(
                 compiler.compile(
@@ -114,8 +127,8 @@ def build(repositories, output_path="libjava-tree-sitter", arch=None, verbose=Tr
             object_paths,
             output_path,
             extra_preargs=extra_preargs,
-            extra_postargs=[os.path.join(here, "tree-sitter", "libtree-sitter.a")],
-            library_dirs=[os.path.join(here, "tree-sitter")],
+            extra_postargs=[] if grammar_only else [os.path.join(here, "tree-sitter", "libtree-sitter.a")],
+            library_dirs=[] if grammar_only else [os.path.join(here, "tree-sitter")],
         )
 
     return True
@@ -128,14 +141,34 @@ if __name__ == "__main__":
         "--arch",
         help="Architecture to build for (x86, x86_64, arm64)",
     )
-    parser.add_argument("-o", "--output", default="libjava-tree-sitter", help="Output file name")
+    parser.add_argument(
+        "-o",
+        "--output",
+        default="libjava-tree-sitter",
+        help="Output file name, or the output directory with --grammar-only",
+    )
+    parser.add_argument(
+        "-g",
+        "--grammar-only",
+        action="store_true",
+        help="Build each grammar into its own libtree-sitter-<name> library, for LanguageRegistry",
+    )
     parser.add_argument("-v", "--verbose", action="store_true", help="Print verbose output")
     parser.add_argument(
         "repositories",
-        nargs="+",
-        help="tree-sitter repositories to include in build",
+        nargs="*",
+        help="tree-sitter repositories to include in build; none builds the runtime alone, for LanguageRegistry",
     )
 
     args = parser.parse_args()
     distutils.log.set_verbosity(int(args.verbose))
-    build(args.repositories, args.output, args.arch, args.verbose)
+    if args.grammar_only:
+        if not args.repositories:
+            parser.error("--grammar-only needs at least one repository")
+        os.makedirs(args.output, exist_ok=True)
+        for repository in args.repositories:
+            # Named the way LanguageRegistry looks the library up.
+            name = f"libtree-sitter-{grammar_name(repository)}"
+            build([repository], os.path.join(args.output, name), args.arch, args.verbose, grammar_only=True)
+    else:
+        build(args.repositories, args.output, args.arch, args.verbose)
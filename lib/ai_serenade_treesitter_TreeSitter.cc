@@ -1,21 +1,100 @@
 #include "ai_serenade_treesitter_TreeSitter.h"
 
 #include <ctype.h>
+#include <dlfcn.h>
 #include <jni.h>
+#include <stdint.h>
 #include <stdlib.h>
 #include <string.h>
 #include <stdio.h>
 #include <tree_sitter/api.h>
 
-struct TreeCursorNode {
-  const char* type;
-  const char* name;
+// Layout of the packed node records shared with NodeRecord.java.
+enum {
+  NODE_RECORD_SYMBOL = 0,
+  NODE_RECORD_FLAGS,
+  NODE_RECORD_START_BYTE,
+  NODE_RECORD_END_BYTE,
+  NODE_RECORD_START_ROW,
+  NODE_RECORD_START_COL,
+  NODE_RECORD_END_ROW,
+  NODE_RECORD_END_COL,
+  NODE_RECORD_CONTEXT0,
+  NODE_RECORD_CONTEXT1,
+  NODE_RECORD_CONTEXT2,
+  NODE_RECORD_CONTEXT3,
+  NODE_RECORD_ID_LOW,
+  NODE_RECORD_ID_HIGH,
+  NODE_RECORD_SIZE
+};
+
+enum {
+  NODE_RECORD_FLAG_NAMED = 1,
+  NODE_RECORD_FLAG_HAS_ERROR = 1 << 1,
+  NODE_RECORD_FLAG_MISSING = 1 << 2,
+  NODE_RECORD_FLAG_EXTRA = 1 << 3
+};
+
+// Columns appended to the node block by treeFlatten, see FlatTree.java.
+enum {
+  FLAT_TREE_PARENT = NODE_RECORD_SIZE,
+  FLAT_TREE_FIELD_ID,
+  FLAT_TREE_STRIDE
+};
+
+// Columns appended to the node block for query captures, see QueryCaptures.java.
+enum {
+  QUERY_CAPTURE_MATCH_ID = NODE_RECORD_SIZE,
+  QUERY_CAPTURE_PATTERN_INDEX,
+  QUERY_CAPTURE_CAPTURE_INDEX,
+  QUERY_CAPTURE_STRIDE
+};
+
+// Columns appended to the node block by treeCursorCurrentRecord, see
+// TreeCursor.java.
+enum {
+  TREE_CURSOR_FIELD_ID = NODE_RECORD_SIZE,
+  TREE_CURSOR_STRIDE
+};
+
+// Columns appended to the node block by treeWalkerNext, see TreeWalker.java.
+enum {
+  TREE_WALKER_DEPTH = NODE_RECORD_SIZE,
+  TREE_WALKER_FIELD_ID,
+  TREE_WALKER_STRIDE
+};
+
+struct TreeWalkerState {
+  TSTreeCursor cursor;
+  uint32_t depth;
+  bool postorder;
+  // In post-order: the children of the current node were already emitted.
+  bool ascending;
+  bool done;
+  jint offsetShift;
+};
+
+// A query cursor together with a match that was read but didn't fit in the caller's batch.
+// The ranges are kept in the caller's units and only handed to tree-sitter by
+// queryCursorExec, once the node tells what the offsets of its tree count.
+struct QueryCursorState {
+  TSQueryCursor* cursor;
+  TSQueryMatch pendingMatch;
+  bool hasPendingMatch;
+  jint offsetShift;
   uint32_t startByte;
   uint32_t endByte;
   TSPoint startPoint;
   TSPoint endPoint;
 };
 
+// Passed to tree-sitter as the payload of a TSInput, see Parser.ChunkInput.
+struct ChunkInputPayload {
+  JNIEnv* env;
+  jobject input;
+  const char* chunk;
+};
+
 static jint JNI_VERSION = JNI_VERSION_10;
 
 static jclass _nodeClass;
@@ -25,19 +104,49 @@ static jfieldID _nodeContext2Field;
 static jfieldID _nodeContext3Field;
 static jfieldID _nodeIdField;
 static jfieldID _nodeTreeField;
+static jfieldID _nodeOffsetShiftField;
 
-static jclass _treeCursorNodeClass;
-static jfieldID _treeCursorNodeTypeField;
-static jfieldID _treeCursorNodeNameField;
-static jfieldID _treeCursorNodeStartByteField;
-static jfieldID _treeCursorNodeEndByteField;
-static jfieldID _treeCursorNodeStartPointField;
-static jfieldID _treeCursorNodeEndPointField;
+static jclass _chunkInputClass;
+static jmethodID _chunkInputReadMethod;
 
 static jclass _pointClass;
 static jfieldID _pointColField;
 static jfieldID _pointRowField;
 
+// Per-method JNI call counters for `Metrics`. A function gets a slot the first time it is called while metrics are
+// enabled. Two threads racing on that may both take a slot; the Java side adds up slots with the same name.
+// Only GCC atomic builtins are used, to stay clear of libstdc++.
+#define JNI_CALL_SLOTS 256
+
+static int _metricsEnabled;
+static int _jniCallSlotCount;
+static const char* _jniCallNames[JNI_CALL_SLOTS];
+static jlong _jniCallCounts[JNI_CALL_SLOTS];
+
+static void _countJniCall(int* slot, const char* name) {
+  int index = __atomic_load_n(slot, __ATOMIC_ACQUIRE);
+  if (index < 0) {
+    int claimed = __atomic_fetch_add(&_jniCallSlotCount, 1, __ATOMIC_RELAXED);
+    if (claimed >= JNI_CALL_SLOTS) return;
+    __atomic_store_n(&_jniCallNames[claimed], name, __ATOMIC_RELEASE);
+    int expected = -1;
+    if (__atomic_compare_exchange_n(slot, &expected, claimed, false,
+                                    __ATOMIC_ACQ_REL, __ATOMIC_ACQUIRE)) {
+      index = claimed;
+    } else {
+      index = expected;
+    }
+  }
+  __atomic_fetch_add(&_jniCallCounts[index], 1, __ATOMIC_RELAXED);
+}
+
+// Costs one relaxed load while metrics are disabled.
+#define COUNT_JNI_CALL()                                     \
+  static int _jniCallSlot = -1;                              \
+  if (__atomic_load_n(&_metricsEnabled, __ATOMIC_RELAXED)) { \
+    _countJniCall(&_jniCallSlot, __func__);                  \
+  }
+
 #define _loadClass(VARIABLE, NAME)             \
   {                                            \
     jclass tmp;                                \
@@ -62,23 +171,14 @@ jint JNI_OnLoad(JavaVM* vm, void* reserved) {
   _loadField(_nodeContext3Field, _nodeClass, "context3", "I");
   _loadField(_nodeIdField, _nodeClass, "id", "J");
   _loadField(_nodeTreeField, _nodeClass, "tree", "J");
+  _loadField(_nodeOffsetShiftField, _nodeClass, "offsetShift", "I");
 
   _loadClass(_pointClass, "ai/serenade/treesitter/Point");
   _loadField(_pointColField, _pointClass, "column", "I");
   _loadField(_pointRowField, _pointClass, "row", "I");
 
-  _loadClass(_treeCursorNodeClass, "ai/serenade/treesitter/TreeCursorNode");
-  _loadField(_treeCursorNodeTypeField, _treeCursorNodeClass, "type",
-             "Ljava/lang/String;");
-  _loadField(_treeCursorNodeNameField, _treeCursorNodeClass, "name",
-             "Ljava/lang/String;");
-  _loadField(_treeCursorNodeStartByteField, _treeCursorNodeClass, "startByte",
-             "I");
-  _loadField(_treeCursorNodeEndByteField, _treeCursorNodeClass, "endByte", "I");
-  _loadField(_treeCursorNodeStartPointField, _treeCursorNodeClass, "startPoint",
-             "Lai/serenade/treesitter/Point;");
-  _loadField(_treeCursorNodeEndPointField, _treeCursorNodeClass, "endPoint",
-             "Lai/serenade/treesitter/Point;");
+  _loadClass(_chunkInputClass, "ai/serenade/treesitter/Parser$ChunkInput");
+  _chunkInputReadMethod = env->GetMethodID(_chunkInputClass, "read", "(I)I");
 
   return JNI_VERSION;
 }
@@ -88,11 +188,13 @@ void JNI_OnUnload(JavaVM* vm, void* reserved) {
   vm->GetEnv(reinterpret_cast<void**>(&env), JNI_VERSION);
 
   env->DeleteGlobalRef(_nodeClass);
-  env->DeleteGlobalRef(_treeCursorNodeClass);
   env->DeleteGlobalRef(_pointClass);
+  env->DeleteGlobalRef(_chunkInputClass);
 }
 
-jobject _marshalNode(JNIEnv* env, TSNode node) {
+// `offset_shift` is 1 for nodes of UTF-16 trees, whose offsets and columns
+// tree-sitter counts in bytes and that are reported in code units.
+jobject _marshalNode(JNIEnv* env, TSNode node, jint offset_shift) {
   jobject javaObject = env->AllocObject(_nodeClass);
   env->SetIntField(javaObject, _nodeContext0Field, node.context[0]);
   env->SetIntField(javaObject, _nodeContext1Field, node.context[1]);
@@ -100,6 +202,7 @@ jobject _marshalNode(JNIEnv* env, TSNode node) {
   env->SetIntField(javaObject, _nodeContext3Field, node.context[3]);
   env->SetLongField(javaObject, _nodeIdField, (jlong)node.id);
   env->SetLongField(javaObject, _nodeTreeField, (jlong)node.tree);
+  env->SetIntField(javaObject, _nodeOffsetShiftField, offset_shift);
   return javaObject;
 }
 
@@ -110,6 +213,25 @@ jobject _marshalPoint(JNIEnv* env, TSPoint point) {
   return javaObject;
 }
 
+jint _nodeOffsetShift(JNIEnv* env, jobject javaObject) {
+  return env->GetIntField(javaObject, _nodeOffsetShiftField);
+}
+
+// Turns an offset or column from code units back into bytes, keeping "up to
+// the end" (UINT32_MAX) as it is.
+uint32_t _unshiftOffset(uint32_t offset, jint shift) {
+  return offset > (UINT32_MAX >> shift) ? UINT32_MAX : offset << shift;
+}
+
+TSPoint _unshiftPoint(TSPoint point, jint shift) {
+  return (TSPoint){point.row, _unshiftOffset(point.column, shift)};
+}
+
+// Wraps a node found from `node` in the same tree.
+jobject _marshalRelatedNode(JNIEnv* env, jobject node, TSNode related) {
+  return _marshalNode(env, related, _nodeOffsetShift(env, node));
+}
+
 TSNode _unmarshalNode(JNIEnv* env, jobject javaObject) {
   return (TSNode){
       {
@@ -122,40 +244,86 @@ TSNode _unmarshalNode(JNIEnv* env, jobject javaObject) {
       (const TSTree*)env->GetLongField(javaObject, _nodeTreeField)};
 }
 
-jobject _marshalTreeCursorNode(JNIEnv* env, TreeCursorNode node) {
-  jobject javaObject = env->AllocObject(_treeCursorNodeClass);
-  env->SetObjectField(javaObject, _treeCursorNodeTypeField,
-                      env->NewStringUTF(node.type));
-  env->SetObjectField(javaObject, _treeCursorNodeNameField,
-                      env->NewStringUTF(node.name));
-  env->SetIntField(javaObject, _treeCursorNodeStartByteField, node.startByte);
-  env->SetIntField(javaObject, _treeCursorNodeEndByteField, node.endByte);
-  env->SetObjectField(javaObject, _treeCursorNodeStartPointField,
-                      _marshalPoint(env, node.startPoint));
-  env->SetObjectField(javaObject, _treeCursorNodeEndPointField,
-                      _marshalPoint(env, node.endPoint));
-  return javaObject;
+void _writeNodeRecord(jint* record, TSNode node) {
+  TSPoint startPoint = ts_node_start_point(node);
+  TSPoint endPoint = ts_node_end_point(node);
+  jint flags = 0;
+  if (ts_node_is_named(node)) flags |= NODE_RECORD_FLAG_NAMED;
+  if (ts_node_has_error(node)) flags |= NODE_RECORD_FLAG_HAS_ERROR;
+  if (ts_node_is_missing(node)) flags |= NODE_RECORD_FLAG_MISSING;
+  if (ts_node_is_extra(node)) flags |= NODE_RECORD_FLAG_EXTRA;
+  record[NODE_RECORD_SYMBOL] = (jint)ts_node_symbol(node);
+  record[NODE_RECORD_FLAGS] = flags;
+  record[NODE_RECORD_START_BYTE] = (jint)ts_node_start_byte(node);
+  record[NODE_RECORD_END_BYTE] = (jint)ts_node_end_byte(node);
+  record[NODE_RECORD_START_ROW] = (jint)startPoint.row;
+  record[NODE_RECORD_START_COL] = (jint)startPoint.column;
+  record[NODE_RECORD_END_ROW] = (jint)endPoint.row;
+  record[NODE_RECORD_END_COL] = (jint)endPoint.column;
+  record[NODE_RECORD_CONTEXT0] = (jint)node.context[0];
+  record[NODE_RECORD_CONTEXT1] = (jint)node.context[1];
+  record[NODE_RECORD_CONTEXT2] = (jint)node.context[2];
+  record[NODE_RECORD_CONTEXT3] = (jint)node.context[3];
+  record[NODE_RECORD_ID_LOW] = (jint)((uint64_t)node.id & 0xffffffff);
+  record[NODE_RECORD_ID_HIGH] = (jint)((uint64_t)node.id >> 32);
+}
+
+void _shiftNodeRecordOffsets(jint* record, jint shift) {
+  record[NODE_RECORD_START_BYTE] >>= shift;
+  record[NODE_RECORD_END_BYTE] >>= shift;
+  record[NODE_RECORD_START_COL] >>= shift;
+  record[NODE_RECORD_END_COL] >>= shift;
 }
 
 JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeChild(
     JNIEnv* env, jclass self, jobject node, jint child) {
-  return _marshalNode(
-      env, ts_node_child(_unmarshalNode(env, node), (uint32_t)child));
+  COUNT_JNI_CALL();
+  return _marshalRelatedNode(
+      env, node, ts_node_child(_unmarshalNode(env, node), (uint32_t)child));
 }
 
 JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeChildCount(
     JNIEnv* env, jclass self, jobject node) {
+  COUNT_JNI_CALL();
   return (jint)ts_node_child_count(_unmarshalNode(env, node));
 }
 
+// The children of `node` as flat tree records, with a parent of -1 and the
+// field each child is stored under. Offsets are shifted like in treeFlatten.
+JNIEXPORT jintArray JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeChildren(
+    JNIEnv* env, jclass self, jobject node, jint offset_shift) {
+  COUNT_JNI_CALL();
+  TSNode parent = _unmarshalNode(env, node);
+  uint32_t count = ts_node_child_count(parent);
+  jintArray result = env->NewIntArray(count * FLAT_TREE_STRIDE);
+  if (result == NULL || count == 0) return result;
+  jint* records = (jint*)malloc(count * FLAT_TREE_STRIDE * sizeof(jint));
+  TSTreeCursor cursor = ts_tree_cursor_new(parent);
+  ts_tree_cursor_goto_first_child(&cursor);
+  for (uint32_t i = 0; i < count; i++) {
+    jint* record = records + i * FLAT_TREE_STRIDE;
+    _writeNodeRecord(record, ts_tree_cursor_current_node(&cursor));
+    record[FLAT_TREE_PARENT] = -1;
+    record[FLAT_TREE_FIELD_ID] = (jint)ts_tree_cursor_current_field_id(&cursor);
+    if (offset_shift != 0) _shiftNodeRecordOffsets(record, offset_shift);
+    ts_tree_cursor_goto_next_sibling(&cursor);
+  }
+  ts_tree_cursor_delete(&cursor);
+  env->SetIntArrayRegion(result, 0, count * FLAT_TREE_STRIDE, records);
+  free(records);
+  return result;
+}
+
 JNIEXPORT jboolean JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeHasError(
     JNIEnv* env, jclass self, jobject node) {
+  COUNT_JNI_CALL();
     // use conditional to avoid conversion from bool to jboolean (unsigned char)
     return ts_node_has_error(_unmarshalNode(env, node)) ? JNI_TRUE : JNI_FALSE;
 }
 
 JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeString(
     JNIEnv* env, jclass self, jobject node) {
+  COUNT_JNI_CALL();
   char* nodeString = ts_node_string(_unmarshalNode(env, node));
   jstring result = env->NewStringUTF(nodeString);
   free(nodeString);
@@ -164,50 +332,59 @@ JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeString(
 
 JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeEndByte(
     JNIEnv* env, jclass self, jobject node) {
-  return (jint)ts_node_end_byte(_unmarshalNode(env, node));
+  COUNT_JNI_CALL();
+  return (jint)(ts_node_end_byte(_unmarshalNode(env, node)) >>
+                _nodeOffsetShift(env, node));
 }
 
 JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeStartByte(
     JNIEnv* env, jclass self, jobject node) {
-  return (jint)ts_node_start_byte(_unmarshalNode(env, node));
+  COUNT_JNI_CALL();
+  return (jint)(ts_node_start_byte(_unmarshalNode(env, node)) >>
+                _nodeOffsetShift(env, node));
 }
 
-JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeType(
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeSymbol(
     JNIEnv* env, jclass self, jobject node) {
-  const char* type = ts_node_type(_unmarshalNode(env, node));
-  jstring result = env->NewStringUTF(type);
-  return result;
+  COUNT_JNI_CALL();
+  return (jint)ts_node_symbol(_unmarshalNode(env, node));
 }
 
 JNIEXPORT jboolean JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeIsNull(
     JNIEnv* env, jclass self, jobject node) {
+  COUNT_JNI_CALL();
   return (jboolean)ts_node_is_null(_unmarshalNode(env, node));
 }
 
 JNIEXPORT jboolean JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeIsNamed(
     JNIEnv* env, jclass self, jobject node) {
+  COUNT_JNI_CALL();
   return (jboolean)ts_node_is_named(_unmarshalNode(env, node));
 }
 
 JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeParent(
     JNIEnv* env, jclass self, jobject node) {
-  return _marshalNode(env, ts_node_parent(_unmarshalNode(env, node)));
+  COUNT_JNI_CALL();
+  return _marshalRelatedNode(env, node, ts_node_parent(_unmarshalNode(env, node)));
 }
 
 JNIEXPORT jobject JNICALL
 Java_ai_serenade_treesitter_TreeSitter_nodePrevSibling(JNIEnv* env, jclass self,
                                                        jobject node) {
-  return _marshalNode(env, ts_node_prev_sibling(_unmarshalNode(env, node)));
+  COUNT_JNI_CALL();
+  return _marshalRelatedNode(env, node, ts_node_prev_sibling(_unmarshalNode(env, node)));
 }
 
 JNIEXPORT jobject JNICALL
 Java_ai_serenade_treesitter_TreeSitter_nodeNextSibling(JNIEnv* env, jclass self,
                                                        jobject node) {
-  return _marshalNode(env, ts_node_next_sibling(_unmarshalNode(env, node)));
+  COUNT_JNI_CALL();
+  return _marshalRelatedNode(env, node, ts_node_next_sibling(_unmarshalNode(env, node)));
 }
 
 JNIEXPORT jboolean JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeHasParent(
     JNIEnv* env, jclass self, jobject node) {
+  COUNT_JNI_CALL();
   TSNode parent = ts_node_parent(_unmarshalNode(env, node));
   return (jboolean)ts_node_is_null(parent) == false;
 }
@@ -216,6 +393,7 @@ JNIEXPORT jboolean JNICALL
 Java_ai_serenade_treesitter_TreeSitter_nodeHasNextSibling(JNIEnv* env,
                                                           jclass self,
                                                           jobject node) {
+  COUNT_JNI_CALL();
   TSNode sibling = ts_node_next_sibling(_unmarshalNode(env, node));
   return (jboolean)ts_node_is_null(sibling) == false;
 }
@@ -224,28 +402,37 @@ JNIEXPORT jboolean JNICALL
 Java_ai_serenade_treesitter_TreeSitter_nodeHasPrevSibling(JNIEnv* env,
                                                           jclass self,
                                                           jobject node) {
+  COUNT_JNI_CALL();
   TSNode sibling = ts_node_prev_sibling(_unmarshalNode(env, node));
   return (jboolean)ts_node_is_null(sibling) == false;
 }
 
 JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeStartPoint(
     JNIEnv* env, jclass self, jobject node) {
-  return _marshalPoint(env, ts_node_start_point(_unmarshalNode(env, node)));
+  COUNT_JNI_CALL();
+  TSPoint point = ts_node_start_point(_unmarshalNode(env, node));
+  point.column >>= _nodeOffsetShift(env, node);
+  return _marshalPoint(env, point);
 }
 
 JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeEndPoint(
     JNIEnv* env, jclass self, jobject node) {
-  return _marshalPoint(env, ts_node_end_point(_unmarshalNode(env, node)));
+  COUNT_JNI_CALL();
+  TSPoint point = ts_node_end_point(_unmarshalNode(env, node));
+  point.column >>= _nodeOffsetShift(env, node);
+  return _marshalPoint(env, point);
 }
 
 JNIEXPORT jlong JNICALL
 Java_ai_serenade_treesitter_TreeSitter_parserNew(JNIEnv* env, jclass self) {
+  COUNT_JNI_CALL();
   return (jlong)ts_parser_new();
 }
 
 JNIEXPORT jobject JNICALL
 Java_ai_serenade_treesitter_TreeSitter_nodeGetChildByFieldName(
     JNIEnv* env, jclass self, jobject node, jstring field_name) {
+  COUNT_JNI_CALL();
     const char *cfield_name = env->GetStringUTFChars(field_name, 0);
 
   uint32_t length = strlen(cfield_name);
@@ -253,25 +440,132 @@ Java_ai_serenade_treesitter_TreeSitter_nodeGetChildByFieldName(
 
   env->ReleaseStringUTFChars(field_name, cfield_name);
 
-  return _marshalNode(
-    env, 
+  return _marshalRelatedNode(
+    env,
+    node,
     other_node
   );
 }
 
+JNIEXPORT jobject JNICALL
+Java_ai_serenade_treesitter_TreeSitter_nodeDescendantForByteRange(
+    JNIEnv* env, jclass self, jobject node, jint startByte, jint endByte,
+    jboolean named) {
+  COUNT_JNI_CALL();
+  TSNode tsNode = _unmarshalNode(env, node);
+  jint shift = _nodeOffsetShift(env, node);
+  uint32_t start = _unshiftOffset((uint32_t)startByte, shift);
+  uint32_t end = _unshiftOffset((uint32_t)endByte, shift);
+  return _marshalNode(
+      env, named ? ts_node_named_descendant_for_byte_range(tsNode, start, end)
+                 : ts_node_descendant_for_byte_range(tsNode, start, end),
+      shift);
+}
+
+JNIEXPORT jobject JNICALL
+Java_ai_serenade_treesitter_TreeSitter_nodeDescendantForPointRange(
+    JNIEnv* env, jclass self, jobject node, jint startRow, jint startColumn,
+    jint endRow, jint endColumn, jboolean named) {
+  COUNT_JNI_CALL();
+  TSNode tsNode = _unmarshalNode(env, node);
+  jint shift = _nodeOffsetShift(env, node);
+  TSPoint start = {(uint32_t)startRow, _unshiftOffset((uint32_t)startColumn, shift)};
+  TSPoint end = {(uint32_t)endRow, _unshiftOffset((uint32_t)endColumn, shift)};
+  return _marshalNode(
+      env, named ? ts_node_named_descendant_for_point_range(tsNode, start, end)
+                 : ts_node_descendant_for_point_range(tsNode, start, end),
+      shift);
+}
+
+JNIEXPORT jobject JNICALL
+Java_ai_serenade_treesitter_TreeSitter_nodeFirstChildForByte(
+    JNIEnv* env, jclass self, jobject node, jint byteOffset, jboolean named) {
+  COUNT_JNI_CALL();
+  TSNode tsNode = _unmarshalNode(env, node);
+  jint shift = _nodeOffsetShift(env, node);
+  uint32_t offset = _unshiftOffset((uint32_t)byteOffset, shift);
+  return _marshalNode(
+      env, named ? ts_node_first_named_child_for_byte(tsNode, offset)
+                 : ts_node_first_child_for_byte(tsNode, offset),
+      shift);
+}
+
+JNIEXPORT jobject JNICALL
+Java_ai_serenade_treesitter_TreeSitter_nodeGetChildByFieldId(JNIEnv* env,
+                                                             jclass self,
+                                                             jobject node,
+                                                             jint field_id) {
+  COUNT_JNI_CALL();
+  return _marshalRelatedNode(
+      env, node,
+      ts_node_child_by_field_id(_unmarshalNode(env, node), (TSFieldId)field_id));
+}
+
 JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_parserDelete(
     JNIEnv* env, jclass self, jlong parser) {
+  COUNT_JNI_CALL();
   ts_parser_delete((TSParser*)parser);
 }
 
 JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_parserSetLanguage(
     JNIEnv* env, jclass self, jlong parser, jlong language) {
+  COUNT_JNI_CALL();
   ts_parser_set_language((TSParser*)parser, (TSLanguage*)language);
 }
 
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_parserReset(
+    JNIEnv* env, jclass self, jlong parser) {
+  COUNT_JNI_CALL();
+  ts_parser_reset((TSParser*)parser);
+}
+
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_parserSetTimeoutMicros(
+    JNIEnv* env, jclass self, jlong parser, jlong timeout) {
+  COUNT_JNI_CALL();
+  ts_parser_set_timeout_micros((TSParser*)parser, (uint64_t)timeout);
+}
+
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserTimeoutMicros(
+    JNIEnv* env, jclass self, jlong parser) {
+  COUNT_JNI_CALL();
+  return (jlong)ts_parser_timeout_micros((TSParser*)parser);
+}
+
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_parserSetCancellationFlag(
+    JNIEnv* env, jclass self, jlong parser, jlong flag) {
+  COUNT_JNI_CALL();
+  ts_parser_set_cancellation_flag((TSParser*)parser, (const size_t*)flag);
+}
+
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_cancellationFlagNew(
+    JNIEnv* env, jclass self) {
+  COUNT_JNI_CALL();
+  return (jlong)calloc(1, sizeof(size_t));
+}
+
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_cancellationFlagDelete(
+    JNIEnv* env, jclass self, jlong flag) {
+  COUNT_JNI_CALL();
+  free((size_t*)flag);
+}
+
+// tree-sitter polls the flag while parsing, from whichever thread runs the parse.
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_cancellationFlagSet(
+    JNIEnv* env, jclass self, jlong flag, jboolean cancelled) {
+  COUNT_JNI_CALL();
+  __atomic_store_n((size_t*)flag, (size_t)(cancelled ? 1 : 0), __ATOMIC_SEQ_CST);
+}
+
+JNIEXPORT jboolean JNICALL Java_ai_serenade_treesitter_TreeSitter_cancellationFlagGet(
+    JNIEnv* env, jclass self, jlong flag) {
+  COUNT_JNI_CALL();
+  return __atomic_load_n((size_t*)flag, __ATOMIC_SEQ_CST) != 0 ? JNI_TRUE : JNI_FALSE;
+}
+
 JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserParseBytes(
     JNIEnv* env, jclass self, jlong parser, jbyteArray source_bytes,
     jint length) {
+  COUNT_JNI_CALL();
   jbyte* source = env->GetByteArrayElements(source_bytes, NULL);
   jlong result = (jlong)ts_parser_parse_string_encoding(
       (TSParser*)parser, NULL, reinterpret_cast<const char*>(source), length,
@@ -282,6 +576,7 @@ JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserParseBytes(
 
 JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserParseBytesUTF8
   (JNIEnv *env, jclass self, jlong parser, jbyteArray source_bytes, jint length) {
+  COUNT_JNI_CALL();
     jbyte* source = env->GetByteArrayElements(source_bytes, NULL);
       jlong result = (jlong)ts_parser_parse_string_encoding(
           (TSParser*)parser, NULL, reinterpret_cast<const char*>(source), length,
@@ -290,43 +585,119 @@ JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserParseBytesU
       return result;
   }
 
+JNIEXPORT jlong JNICALL
+Java_ai_serenade_treesitter_TreeSitter_parserIncrementalParseBytesUTF8(
+    JNIEnv* env, jclass self, jlong parser, jlong old_tree,
+    jbyteArray source_bytes, jint length) {
+  COUNT_JNI_CALL();
+  jbyte* source = env->GetByteArrayElements(source_bytes, NULL);
+  jlong result = (jlong)ts_parser_parse_string_encoding(
+      (TSParser*)parser, (const TSTree*)old_tree,
+      reinterpret_cast<const char*>(source), length, TSInputEncodingUTF8);
+  env->ReleaseByteArrayElements(source_bytes, source, JNI_ABORT);
+  return result;
+}
+
+JNIEXPORT jlong JNICALL
+Java_ai_serenade_treesitter_TreeSitter_parserParseDirectBuffer(
+    JNIEnv* env, jclass self, jlong parser, jlong old_tree, jobject source,
+    jint offset, jint length) {
+  COUNT_JNI_CALL();
+  const char* address = (const char*)env->GetDirectBufferAddress(source);
+  return (jlong)ts_parser_parse_string_encoding(
+      (TSParser*)parser, (const TSTree*)old_tree, address + offset, length,
+      TSInputEncodingUTF8);
+}
+
+JNIEXPORT jlong JNICALL
+Java_ai_serenade_treesitter_TreeSitter_parserParseStringUTF16(
+    JNIEnv* env, jclass self, jlong parser, jlong old_tree, jstring source) {
+  COUNT_JNI_CALL();
+  jsize length = env->GetStringLength(source);
+  // No JNI calls are allowed until the string is released, and tree-sitter
+  // doesn't call back into Java while parsing a string.
+  const jchar* chars = env->GetStringCritical(source, NULL);
+  jlong result = (jlong)ts_parser_parse_string_encoding(
+      (TSParser*)parser, (const TSTree*)old_tree, (const char*)chars,
+      length * sizeof(jchar), TSInputEncodingUTF16);
+  env->ReleaseStringCritical(source, chars);
+  return result;
+}
+
+const char* _readChunk(void* payload, uint32_t byte_index, TSPoint position,
+                       uint32_t* bytes_read) {
+  ChunkInputPayload* input = (ChunkInputPayload*)payload;
+  *bytes_read = 0;
+  // Once Java threw, we can't call back anymore. Report the end of the input
+  // so that the parse finishes quickly; the caller throws the exception.
+  if (input->env->ExceptionCheck()) return "";
+  jint count = input->env->CallIntMethod(input->input, _chunkInputReadMethod,
+                                         (jint)byte_index);
+  if (input->env->ExceptionCheck() || count <= 0) return "";
+  *bytes_read = (uint32_t)count;
+  return input->chunk;
+}
+
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserParseInput(
+    JNIEnv* env, jclass self, jlong parser, jlong old_tree, jobject input,
+    jobject chunk) {
+  COUNT_JNI_CALL();
+  ChunkInputPayload payload = {env, input,
+                               (const char*)env->GetDirectBufferAddress(chunk)};
+  TSInput tsInput = {&payload, _readChunk, TSInputEncodingUTF8};
+  TSTree* tree = ts_parser_parse((TSParser*)parser, (const TSTree*)old_tree, tsInput);
+  if (env->ExceptionCheck() && tree != NULL) {
+    ts_tree_delete(tree);
+    return 0;
+  }
+  return (jlong)tree;
+}
+
 JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorNew(
     JNIEnv* env, jclass self, jobject node) {
+  COUNT_JNI_CALL();
   TSTreeCursor* cursor = (TSTreeCursor*)malloc(sizeof(TSTreeCursor));
   TSTreeCursor val = ts_tree_cursor_new(_unmarshalNode(env, node));
   memcpy(cursor, &val, sizeof(TSTreeCursor));
   return (jlong)cursor;
 }
 
-JNIEXPORT jstring JNICALL
-Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentFieldName(
-    JNIEnv* env, jclass self, jlong cursor) {
-  const char* name = ts_tree_cursor_current_field_name((TSTreeCursor*)cursor);
-  jstring result = env->NewStringUTF(name);
-  return result;
+JNIEXPORT jint JNICALL
+Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentFieldId(JNIEnv* env,
+                                                                jclass self,
+                                                                jlong cursor) {
+  COUNT_JNI_CALL();
+  return (jint)ts_tree_cursor_current_field_id((TSTreeCursor*)cursor);
 }
 
 JNIEXPORT jobject JNICALL
-Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentNode(JNIEnv* env,
-                                                             jclass self,
-                                                             jlong cursor) {
-  return _marshalNode(env, ts_tree_cursor_current_node((TSTreeCursor*)cursor));
+Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentNode(
+    JNIEnv* env, jclass self, jlong cursor, jint offset_shift) {
+  COUNT_JNI_CALL();
+  return _marshalNode(env, ts_tree_cursor_current_node((TSTreeCursor*)cursor),
+                      offset_shift);
 }
 
-JNIEXPORT jobject JNICALL
-Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentTreeCursorNode(
-    JNIEnv* env, jclass self, jlong cursor) {
-  TSNode node = ts_tree_cursor_current_node((TSTreeCursor*)cursor);
-  return _marshalTreeCursorNode(
-      env,
-      (TreeCursorNode){ts_node_type(node),
-                       ts_tree_cursor_current_field_name((TSTreeCursor*)cursor),
-                       ts_node_start_byte(node), ts_node_end_byte(node),
-                       ts_node_start_point(node), ts_node_end_point(node)});
+// Writes the current node and its field id into `record`, so that the Java side
+// can fill in the type and field name from the language's interned tables
+// instead of making new strings for every node.
+JNIEXPORT void JNICALL
+Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentRecord(
+    JNIEnv* env, jclass self, jlong cursor, jintArray record,
+    jint offset_shift) {
+  COUNT_JNI_CALL();
+  jint buffer[TREE_CURSOR_STRIDE];
+  _writeNodeRecord(buffer,
+                   ts_tree_cursor_current_node((TSTreeCursor*)cursor));
+  buffer[TREE_CURSOR_FIELD_ID] =
+      (jint)ts_tree_cursor_current_field_id((TSTreeCursor*)cursor);
+  if (offset_shift != 0) _shiftNodeRecordOffsets(buffer, offset_shift);
+  env->SetIntArrayRegion(record, 0, TREE_CURSOR_STRIDE, buffer);
 }
 
 JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorDelete(
     JNIEnv* env, jclass self, jlong cursor) {
+  COUNT_JNI_CALL();
   free((void*)cursor);
 }
 
@@ -334,6 +705,7 @@ JNIEXPORT jboolean JNICALL
 Java_ai_serenade_treesitter_TreeSitter_treeCursorGotoFirstChild(JNIEnv* env,
                                                                 jclass self,
                                                                 jlong cursor) {
+  COUNT_JNI_CALL();
   return (jboolean)ts_tree_cursor_goto_first_child((TSTreeCursor*)cursor);
 }
 
@@ -341,6 +713,7 @@ JNIEXPORT jboolean JNICALL
 Java_ai_serenade_treesitter_TreeSitter_treeCursorGotoNextSibling(JNIEnv* env,
                                                                  jclass self,
                                                                  jlong cursor) {
+  COUNT_JNI_CALL();
   return (jboolean)ts_tree_cursor_goto_next_sibling((TSTreeCursor*)cursor);
 }
 
@@ -348,15 +721,476 @@ JNIEXPORT jboolean JNICALL
 Java_ai_serenade_treesitter_TreeSitter_treeCursorGotoParent(JNIEnv* env,
                                                             jclass self,
                                                             jlong cursor) {
+  COUNT_JNI_CALL();
   return (jboolean)ts_tree_cursor_goto_parent((TSTreeCursor*)cursor);
 }
 
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_treeWalkerNew(
+    JNIEnv* env, jclass self, jobject node, jboolean postorder) {
+  COUNT_JNI_CALL();
+  TreeWalkerState* walker = (TreeWalkerState*)malloc(sizeof(TreeWalkerState));
+  walker->cursor = ts_tree_cursor_new(_unmarshalNode(env, node));
+  walker->depth = 0;
+  walker->postorder = postorder;
+  walker->ascending = false;
+  walker->done = false;
+  walker->offsetShift = _nodeOffsetShift(env, node);
+  return (jlong)walker;
+}
+
+void _writeWalkerRecord(jint* record, TreeWalkerState* walker) {
+  _writeNodeRecord(record, ts_tree_cursor_current_node(&walker->cursor));
+  record[TREE_WALKER_DEPTH] = (jint)walker->depth;
+  record[TREE_WALKER_FIELD_ID] =
+      (jint)ts_tree_cursor_current_field_id(&walker->cursor);
+  if (walker->offsetShift != 0)
+    _shiftNodeRecordOffsets(record, walker->offsetShift);
+}
+
+// Fills `records` with the next nodes of the walk and returns how many it
+// wrote. Fewer than fit means the walk is over.
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_treeWalkerNext(
+    JNIEnv* env, jclass self, jlong pointer, jintArray records) {
+  COUNT_JNI_CALL();
+  TreeWalkerState* walker = (TreeWalkerState*)pointer;
+  TSTreeCursor* cursor = &walker->cursor;
+  uint32_t capacity = env->GetArrayLength(records) / TREE_WALKER_STRIDE;
+  jint* buffer = env->GetIntArrayElements(records, NULL);
+  uint32_t count = 0;
+
+  while (count < capacity && !walker->done) {
+    if (walker->postorder) {
+      // Go down as far as possible before emitting anything.
+      if (!walker->ascending && ts_tree_cursor_goto_first_child(cursor)) {
+        walker->depth++;
+        continue;
+      }
+      _writeWalkerRecord(buffer + count++ * TREE_WALKER_STRIDE, walker);
+      if (ts_tree_cursor_goto_next_sibling(cursor)) {
+        walker->ascending = false;
+      } else if (ts_tree_cursor_goto_parent(cursor)) {
+        walker->depth--;
+        walker->ascending = true;
+      } else {
+        walker->done = true;
+      }
+    } else {
+      _writeWalkerRecord(buffer + count++ * TREE_WALKER_STRIDE, walker);
+      if (ts_tree_cursor_goto_first_child(cursor)) {
+        walker->depth++;
+        continue;
+      }
+      while (!ts_tree_cursor_goto_next_sibling(cursor)) {
+        if (!ts_tree_cursor_goto_parent(cursor)) {
+          walker->done = true;
+          break;
+        }
+        walker->depth--;
+      }
+    }
+  }
+
+  env->ReleaseIntArrayElements(records, buffer, 0);
+  return (jint)count;
+}
+
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_treeWalkerDelete(
+    JNIEnv* env, jclass self, jlong pointer) {
+  COUNT_JNI_CALL();
+  TreeWalkerState* walker = (TreeWalkerState*)pointer;
+  ts_tree_cursor_delete(&walker->cursor);
+  free(walker);
+}
+
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCopy(
+    JNIEnv* env, jclass self, jlong tree) {
+  COUNT_JNI_CALL();
+  return (jlong)ts_tree_copy((TSTree*)tree);
+}
+
 JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_treeDelete(
     JNIEnv* env, jclass self, jlong tree) {
+  COUNT_JNI_CALL();
   ts_tree_delete((TSTree*)tree);
 }
 
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_treeEdit(
+    JNIEnv* env, jclass self, jlong tree, jint start_byte, jint old_end_byte,
+    jint new_end_byte, jint start_row, jint start_column, jint old_end_row,
+    jint old_end_column, jint new_end_row, jint new_end_column) {
+  COUNT_JNI_CALL();
+  TSInputEdit edit = {(uint32_t)start_byte,
+                      (uint32_t)old_end_byte,
+                      (uint32_t)new_end_byte,
+                      {(uint32_t)start_row, (uint32_t)start_column},
+                      {(uint32_t)old_end_row, (uint32_t)old_end_column},
+                      {(uint32_t)new_end_row, (uint32_t)new_end_column}};
+  ts_tree_edit((TSTree*)tree, &edit);
+}
+
 JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_treeRootNode(
+    JNIEnv* env, jclass self, jlong tree, jint offset_shift) {
+  COUNT_JNI_CALL();
+  return _marshalNode(env, ts_tree_root_node((TSTree*)tree), offset_shift);
+}
+
+// Offsets and columns are shifted right by `offset_shift`, so that UTF-16 trees
+// report code units instead of bytes.
+JNIEXPORT jintArray JNICALL Java_ai_serenade_treesitter_TreeSitter_treeFlatten(
+    JNIEnv* env, jclass self, jlong tree, jint offset_shift) {
+  COUNT_JNI_CALL();
+  TSTreeCursor cursor = ts_tree_cursor_new(ts_tree_root_node((TSTree*)tree));
+  uint32_t capacity = 1024;
+  uint32_t count = 0;
+  jint* records = (jint*)malloc(capacity * FLAT_TREE_STRIDE * sizeof(jint));
+  // parents[depth] holds the index of the node the cursor visited last at that depth.
+  uint32_t parentsCapacity = 64;
+  uint32_t depth = 0;
+  jint* parents = (jint*)malloc(parentsCapacity * sizeof(jint));
+
+  for (;;) {
+    if (count == capacity) {
+      capacity *= 2;
+      records = (jint*)realloc(records, capacity * FLAT_TREE_STRIDE * sizeof(jint));
+    }
+    if (depth == parentsCapacity) {
+      parentsCapacity *= 2;
+      parents = (jint*)realloc(parents, parentsCapacity * sizeof(jint));
+    }
+    jint* record = records + count * FLAT_TREE_STRIDE;
+    _writeNodeRecord(record, ts_tree_cursor_current_node(&cursor));
+    record[FLAT_TREE_PARENT] = depth == 0 ? -1 : parents[depth - 1];
+    record[FLAT_TREE_FIELD_ID] = (jint)ts_tree_cursor_current_field_id(&cursor);
+    if (offset_shift != 0) _shiftNodeRecordOffsets(record, offset_shift);
+    parents[depth] = count++;
+
+    if (ts_tree_cursor_goto_first_child(&cursor)) {
+      depth++;
+      continue;
+    }
+    bool done = false;
+    while (!ts_tree_cursor_goto_next_sibling(&cursor)) {
+      if (!ts_tree_cursor_goto_parent(&cursor)) {
+        done = true;
+        break;
+      }
+      depth--;
+    }
+    if (done) break;
+  }
+
+  jintArray result = env->NewIntArray(count * FLAT_TREE_STRIDE);
+  if (result != NULL) {
+    env->SetIntArrayRegion(result, 0, count * FLAT_TREE_STRIDE, records);
+  }
+  free(parents);
+  free(records);
+  ts_tree_cursor_delete(&cursor);
+  return result;
+}
+
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_queryNew(
+    JNIEnv* env, jclass self, jlong language, jbyteArray source_bytes,
+    jint length, jintArray error) {
+  COUNT_JNI_CALL();
+  jbyte* source = env->GetByteArrayElements(source_bytes, NULL);
+  uint32_t errorOffset = 0;
+  TSQueryError errorType = TSQueryErrorNone;
+  TSQuery* query = ts_query_new((const TSLanguage*)language,
+                                reinterpret_cast<const char*>(source), length,
+                                &errorOffset, &errorType);
+  env->ReleaseByteArrayElements(source_bytes, source, JNI_ABORT);
+  jint errorValues[2] = {(jint)errorOffset, (jint)errorType};
+  env->SetIntArrayRegion(error, 0, 2, errorValues);
+  return (jlong)query;
+}
+
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_queryDelete(
+    JNIEnv* env, jclass self, jlong query) {
+  COUNT_JNI_CALL();
+  ts_query_delete((TSQuery*)query);
+}
+
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_queryPatternCount(
+    JNIEnv* env, jclass self, jlong query) {
+  COUNT_JNI_CALL();
+  return (jint)ts_query_pattern_count((TSQuery*)query);
+}
+
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCaptureCount(
+    JNIEnv* env, jclass self, jlong query) {
+  COUNT_JNI_CALL();
+  return (jint)ts_query_capture_count((TSQuery*)query);
+}
+
+JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCaptureName(
+    JNIEnv* env, jclass self, jlong query, jint capture_index) {
+  COUNT_JNI_CALL();
+  uint32_t length = 0;
+  const char* name = ts_query_capture_name_for_id((TSQuery*)query,
+                                                  (uint32_t)capture_index, &length);
+  // The name isn't null-terminated.
+  char* copy = (char*)malloc(length + 1);
+  memcpy(copy, name, length);
+  copy[length] = '\0';
+  jstring result = env->NewStringUTF(copy);
+  free(copy);
+  return result;
+}
+
+JNIEXPORT jlong JNICALL
+Java_ai_serenade_treesitter_TreeSitter_queryCursorNew(JNIEnv* env, jclass self) {
+  COUNT_JNI_CALL();
+  QueryCursorState* state = (QueryCursorState*)malloc(sizeof(QueryCursorState));
+  state->cursor = ts_query_cursor_new();
+  state->hasPendingMatch = false;
+  state->offsetShift = 0;
+  state->startByte = 0;
+  state->endByte = UINT32_MAX;
+  state->startPoint = (TSPoint){0, 0};
+  state->endPoint = (TSPoint){UINT32_MAX, UINT32_MAX};
+  return (jlong)state;
+}
+
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCursorDelete(
+    JNIEnv* env, jclass self, jlong cursor) {
+  COUNT_JNI_CALL();
+  QueryCursorState* state = (QueryCursorState*)cursor;
+  ts_query_cursor_delete(state->cursor);
+  free(state);
+}
+
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCursorExec(
+    JNIEnv* env, jclass self, jlong cursor, jlong query, jobject node) {
+  COUNT_JNI_CALL();
+  QueryCursorState* state = (QueryCursorState*)cursor;
+  state->hasPendingMatch = false;
+  state->offsetShift = _nodeOffsetShift(env, node);
+  ts_query_cursor_set_byte_range(
+      state->cursor, _unshiftOffset(state->startByte, state->offsetShift),
+      _unshiftOffset(state->endByte, state->offsetShift));
+  ts_query_cursor_set_point_range(
+      state->cursor, _unshiftPoint(state->startPoint, state->offsetShift),
+      _unshiftPoint(state->endPoint, state->offsetShift));
+  ts_query_cursor_exec(state->cursor, (TSQuery*)query, _unmarshalNode(env, node));
+}
+
+JNIEXPORT void JNICALL
+Java_ai_serenade_treesitter_TreeSitter_queryCursorSetByteRange(
+    JNIEnv* env, jclass self, jlong cursor, jint start_byte, jint end_byte) {
+  COUNT_JNI_CALL();
+  QueryCursorState* state = (QueryCursorState*)cursor;
+  state->startByte = (uint32_t)start_byte;
+  state->endByte = (uint32_t)end_byte;
+}
+
+JNIEXPORT void JNICALL
+Java_ai_serenade_treesitter_TreeSitter_queryCursorSetPointRange(
+    JNIEnv* env, jclass self, jlong cursor, jint start_row, jint start_column,
+    jint end_row, jint end_column) {
+  COUNT_JNI_CALL();
+  QueryCursorState* state = (QueryCursorState*)cursor;
+  state->startPoint = (TSPoint){(uint32_t)start_row, (uint32_t)start_column};
+  state->endPoint = (TSPoint){(uint32_t)end_row, (uint32_t)end_column};
+}
+
+void _writeQueryCapture(jint* record, const TSQueryMatch& match,
+                        const TSQueryCapture& capture, jint offset_shift) {
+  _writeNodeRecord(record, capture.node);
+  if (offset_shift != 0) _shiftNodeRecordOffsets(record, offset_shift);
+  record[QUERY_CAPTURE_MATCH_ID] = (jint)match.id;
+  record[QUERY_CAPTURE_PATTERN_INDEX] = (jint)match.pattern_index;
+  record[QUERY_CAPTURE_CAPTURE_INDEX] = (jint)capture.index;
+}
+
+// Writes whole matches into `records` until it is full. Returns the number of
+// captures written, or minus the capacity needed if the next match doesn't fit
+// in an empty batch.
+JNIEXPORT jint JNICALL
+Java_ai_serenade_treesitter_TreeSitter_queryCursorNextMatches(
+    JNIEnv* env, jclass self, jlong cursor, jintArray records) {
+  COUNT_JNI_CALL();
+  QueryCursorState* state = (QueryCursorState*)cursor;
+  uint32_t capacity = env->GetArrayLength(records) / QUERY_CAPTURE_STRIDE;
+  jint* buffer = env->GetIntArrayElements(records, NULL);
+  uint32_t count = 0;
+  jint result = 0;
+  for (;;) {
+    if (!state->hasPendingMatch) {
+      if (!ts_query_cursor_next_match(state->cursor, &state->pendingMatch)) break;
+      state->hasPendingMatch = true;
+    }
+    TSQueryMatch& match = state->pendingMatch;
+    if (count + match.capture_count > capacity) {
+      if (count == 0) result = -(jint)match.capture_count;
+      break;
+    }
+    for (uint16_t i = 0; i < match.capture_count; i++) {
+      _writeQueryCapture(buffer + count * QUERY_CAPTURE_STRIDE, match,
+                         match.captures[i], state->offsetShift);
+      count++;
+    }
+    state->hasPendingMatch = false;
+  }
+  env->ReleaseIntArrayElements(records, buffer, 0);
+  return result < 0 ? result : (jint)count;
+}
+
+JNIEXPORT jint JNICALL
+Java_ai_serenade_treesitter_TreeSitter_queryCursorNextCaptures(
+    JNIEnv* env, jclass self, jlong cursor, jintArray records) {
+  COUNT_JNI_CALL();
+  QueryCursorState* state = (QueryCursorState*)cursor;
+  uint32_t capacity = env->GetArrayLength(records) / QUERY_CAPTURE_STRIDE;
+  jint* buffer = env->GetIntArrayElements(records, NULL);
+  uint32_t count = 0;
+  TSQueryMatch match;
+  uint32_t captureIndex;
+  while (count < capacity &&
+         ts_query_cursor_next_capture(state->cursor, &match, &captureIndex)) {
+    _writeQueryCapture(buffer + count * QUERY_CAPTURE_STRIDE, match,
+                       match.captures[captureIndex], state->offsetShift);
+    count++;
+  }
+  env->ReleaseIntArrayElements(records, buffer, 0);
+  return (jint)count;
+}
+
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_treeLanguage(
+    JNIEnv* env, jclass self, jlong tree) {
+  COUNT_JNI_CALL();
+  return (jlong)ts_tree_language((TSTree*)tree);
+}
+
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_treeNodeCount(
     JNIEnv* env, jclass self, jlong tree) {
-  return _marshalNode(env, ts_tree_root_node((TSTree*)tree));
+  COUNT_JNI_CALL();
+  TSTreeCursor cursor = ts_tree_cursor_new(ts_tree_root_node((TSTree*)tree));
+  jint count = 0;
+  bool more = true;
+  while (more) {
+    count++;
+    if (ts_tree_cursor_goto_first_child(&cursor)) continue;
+    while (!ts_tree_cursor_goto_next_sibling(&cursor)) {
+      if (!ts_tree_cursor_goto_parent(&cursor)) {
+        more = false;
+        break;
+      }
+    }
+  }
+  ts_tree_cursor_delete(&cursor);
+  return count;
+}
+
+JNIEXPORT jint JNICALL
+Java_ai_serenade_treesitter_TreeSitter_languageSymbolCount(JNIEnv* env,
+                                                           jclass self,
+                                                           jlong language) {
+  COUNT_JNI_CALL();
+  return (jint)ts_language_symbol_count((TSLanguage*)language);
+}
+
+JNIEXPORT jstring JNICALL
+Java_ai_serenade_treesitter_TreeSitter_languageSymbolName(JNIEnv* env,
+                                                          jclass self,
+                                                          jlong language,
+                                                          jint symbol) {
+  COUNT_JNI_CALL();
+  return env->NewStringUTF(
+      ts_language_symbol_name((TSLanguage*)language, (TSSymbol)symbol));
+}
+
+JNIEXPORT jint JNICALL
+Java_ai_serenade_treesitter_TreeSitter_languageSymbolType(JNIEnv* env,
+                                                          jclass self,
+                                                          jlong language,
+                                                          jint symbol) {
+  COUNT_JNI_CALL();
+  return (jint)ts_language_symbol_type((TSLanguage*)language, (TSSymbol)symbol);
+}
+
+JNIEXPORT jint JNICALL
+Java_ai_serenade_treesitter_TreeSitter_languageFieldCount(JNIEnv* env,
+                                                          jclass self,
+                                                          jlong language) {
+  COUNT_JNI_CALL();
+  return (jint)ts_language_field_count((TSLanguage*)language);
+}
+
+JNIEXPORT jstring JNICALL
+Java_ai_serenade_treesitter_TreeSitter_languageFieldName(JNIEnv* env,
+                                                         jclass self,
+                                                         jlong language,
+                                                         jint field_id) {
+  COUNT_JNI_CALL();
+  return env->NewStringUTF(
+      ts_language_field_name_for_id((TSLanguage*)language, (TSFieldId)field_id));
+}
+
+// Loads a grammar from a separately built library. The library stays loaded for the life of the process, since
+// the language lives in it. On failure, returns 0 and puts the reason in error[0].
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_languageLoad(
+    JNIEnv* env, jclass self, jstring libraryPath, jstring symbolName,
+    jobjectArray error) {
+  COUNT_JNI_CALL();
+  const char* path = env->GetStringUTFChars(libraryPath, NULL);
+  const char* symbol = env->GetStringUTFChars(symbolName, NULL);
+  char message[512];
+  message[0] = '\0';
+  const TSLanguage* language = NULL;
+  void* library = dlopen(path, RTLD_NOW | RTLD_LOCAL);
+  if (library == NULL) {
+    snprintf(message, sizeof(message), "%s", dlerror());
+  } else {
+    void* function = dlsym(library, symbol);
+    if (function == NULL) {
+      snprintf(message, sizeof(message), "%s", dlerror());
+    } else {
+      language = ((const TSLanguage* (*)())function)();
+      uint32_t version = ts_language_version(language);
+      if (version < TREE_SITTER_MIN_COMPATIBLE_LANGUAGE_VERSION ||
+          version > TREE_SITTER_LANGUAGE_VERSION) {
+        snprintf(message, sizeof(message),
+                 "%s has language version %u, but only %d to %d are supported",
+                 path, version, TREE_SITTER_MIN_COMPATIBLE_LANGUAGE_VERSION,
+                 TREE_SITTER_LANGUAGE_VERSION);
+        language = NULL;
+      }
+    }
+    if (language == NULL) dlclose(library);
+  }
+  env->ReleaseStringUTFChars(libraryPath, path);
+  env->ReleaseStringUTFChars(symbolName, symbol);
+  if (language == NULL) {
+    jstring reason = env->NewStringUTF(message);
+    env->SetObjectArrayElement(error, 0, reason);
+    env->DeleteLocalRef(reason);
+  }
+  return (jlong)language;
+}
+
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_metricsSetEnabled(
+    JNIEnv* env, jclass self, jboolean enabled) {
+  __atomic_store_n(&_metricsEnabled, enabled ? 1 : 0, __ATOMIC_RELAXED);
+}
+
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_metricsJniCallCount(
+    JNIEnv* env, jclass self) {
+  int count = __atomic_load_n(&_jniCallSlotCount, __ATOMIC_RELAXED);
+  return count < JNI_CALL_SLOTS ? count : JNI_CALL_SLOTS;
+}
+
+JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_metricsJniCallName(
+    JNIEnv* env, jclass self, jint index) {
+  const char* name = __atomic_load_n(&_jniCallNames[index], __ATOMIC_ACQUIRE);
+  if (name == NULL) return NULL;
+  const char* prefix = "Java_ai_serenade_treesitter_TreeSitter_";
+  size_t length = strlen(prefix);
+  if (strncmp(name, prefix, length) == 0) name += length;
+  return env->NewStringUTF(name);
+}
+
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_metricsJniCallValue(
+    JNIEnv* env, jclass self, jint index) {
+  return __atomic_load_n(&_jniCallCounts[index], __ATOMIC_RELAXED);
 }
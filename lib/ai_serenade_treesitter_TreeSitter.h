@@ -23,6 +23,14 @@ JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeChild
 JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeChildCount
   (JNIEnv *, jclass, jobject);
 
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    nodeChildren
+ * Signature: (Lai/serenade/treesitter/Node;I)[I
+ */
+JNIEXPORT jintArray JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeChildren
+  (JNIEnv *, jclass, jobject, jint);
+
 /*
  * Class:     ai_serenade_treesitter_TreeSitter
  * Method:    nodeHasError
@@ -73,10 +81,10 @@ JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeString
 
 /*
  * Class:     ai_serenade_treesitter_TreeSitter
- * Method:    nodeType
- * Signature: (Lai/serenade/treesitter/Node;)Ljava/lang/String;
+ * Method:    nodeSymbol
+ * Signature: (Lai/serenade/treesitter/Node;)I
  */
-JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeType
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeSymbol
   (JNIEnv *, jclass, jobject);
 
 /*
@@ -175,6 +183,70 @@ JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_parserDelete
 JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_parserSetLanguage
   (JNIEnv *, jclass, jlong, jlong);
 
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    parserReset
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_parserReset
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    parserSetTimeoutMicros
+ * Signature: (JJ)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_parserSetTimeoutMicros
+  (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    parserTimeoutMicros
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserTimeoutMicros
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    parserSetCancellationFlag
+ * Signature: (JJ)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_parserSetCancellationFlag
+  (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    cancellationFlagNew
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_cancellationFlagNew
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    cancellationFlagDelete
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_cancellationFlagDelete
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    cancellationFlagSet
+ * Signature: (JZ)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_cancellationFlagSet
+  (JNIEnv *, jclass, jlong, jboolean);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    cancellationFlagGet
+ * Signature: (J)Z
+ */
+JNIEXPORT jboolean JNICALL Java_ai_serenade_treesitter_TreeSitter_cancellationFlagGet
+  (JNIEnv *, jclass, jlong);
+
 /*
  * Class:     ai_serenade_treesitter_TreeSitter
  * Method:    parserParseBytes
@@ -191,6 +263,38 @@ JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserParseBytes
 JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserParseBytesUTF8
   (JNIEnv *, jclass, jlong, jbyteArray, jint);
 
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    parserIncrementalParseBytesUTF8
+ * Signature: (JJ[BI)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserIncrementalParseBytesUTF8
+  (JNIEnv *, jclass, jlong, jlong, jbyteArray, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    parserParseDirectBuffer
+ * Signature: (JJLjava/nio/ByteBuffer;II)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserParseDirectBuffer
+  (JNIEnv *, jclass, jlong, jlong, jobject, jint, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    parserParseStringUTF16
+ * Signature: (JJLjava/lang/String;)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserParseStringUTF16
+  (JNIEnv *, jclass, jlong, jlong, jstring);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    parserParseInput
+ * Signature: (JJLai/serenade/treesitter/Parser/ChunkInput;Ljava/nio/ByteBuffer;)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_parserParseInput
+  (JNIEnv *, jclass, jlong, jlong, jobject, jobject);
+
 /*
  * Class:     ai_serenade_treesitter_TreeSitter
  * Method:    treeCursorNew
@@ -201,27 +305,27 @@ JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorNew
 
 /*
  * Class:     ai_serenade_treesitter_TreeSitter
- * Method:    treeCursorCurrentTreeCursorNode
- * Signature: (J)Lai/serenade/treesitter/TreeCursorNode;
+ * Method:    treeCursorCurrentRecord
+ * Signature: (J[II)V
  */
-JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentTreeCursorNode
-  (JNIEnv *, jclass, jlong);
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentRecord
+  (JNIEnv *, jclass, jlong, jintArray, jint);
 
 /*
  * Class:     ai_serenade_treesitter_TreeSitter
- * Method:    treeCursorCurrentFieldName
- * Signature: (J)Ljava/lang/String;
+ * Method:    treeCursorCurrentFieldId
+ * Signature: (J)I
  */
-JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentFieldName
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentFieldId
   (JNIEnv *, jclass, jlong);
 
 /*
  * Class:     ai_serenade_treesitter_TreeSitter
  * Method:    treeCursorCurrentNode
- * Signature: (J)Lai/serenade/treesitter/Node;
+ * Signature: (JI)Lai/serenade/treesitter/Node;
  */
 JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorCurrentNode
-  (JNIEnv *, jclass, jlong);
+  (JNIEnv *, jclass, jlong, jint);
 
 /*
  * Class:     ai_serenade_treesitter_TreeSitter
@@ -255,6 +359,38 @@ JNIEXPORT jboolean JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorGoto
 JNIEXPORT jboolean JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorGotoParent
   (JNIEnv *, jclass, jlong);
 
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    treeWalkerNew
+ * Signature: (Lai/serenade/treesitter/Node;Z)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_treeWalkerNew
+  (JNIEnv *, jclass, jobject, jboolean);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    treeWalkerNext
+ * Signature: (J[I)I
+ */
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_treeWalkerNext
+  (JNIEnv *, jclass, jlong, jintArray);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    treeWalkerDelete
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_treeWalkerDelete
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    treeCopy
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCopy
+  (JNIEnv *, jclass, jlong);
+
 /*
  * Class:     ai_serenade_treesitter_TreeSitter
  * Method:    treeDelete
@@ -263,12 +399,44 @@ JNIEXPORT jboolean JNICALL Java_ai_serenade_treesitter_TreeSitter_treeCursorGoto
 JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_treeDelete
   (JNIEnv *, jclass, jlong);
 
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    treeEdit
+ * Signature: (JIIIIIIIII)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_treeEdit
+  (JNIEnv *, jclass, jlong, jint, jint, jint, jint, jint, jint, jint, jint, jint);
+
 /*
  * Class:     ai_serenade_treesitter_TreeSitter
  * Method:    treeRootNode
- * Signature: (J)Lai/serenade/treesitter/Node;
+ * Signature: (JI)Lai/serenade/treesitter/Node;
  */
 JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_treeRootNode
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    treeFlatten
+ * Signature: (JI)[I
+ */
+JNIEXPORT jintArray JNICALL Java_ai_serenade_treesitter_TreeSitter_treeFlatten
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    treeLanguage
+ * Signature: (J)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_treeLanguage
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    treeNodeCount
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_treeNodeCount
   (JNIEnv *, jclass, jlong);
 
 /*
@@ -279,6 +447,214 @@ JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_treeRootNode
 JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeGetChildByFieldName
   (JNIEnv *, jclass, jobject, jstring);
 
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    nodeGetChildByFieldId
+ * Signature: (Lai/serenade/treesitter/Node;I)Lai/serenade/treesitter/Node;
+ */
+JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeGetChildByFieldId
+  (JNIEnv *, jclass, jobject, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    nodeDescendantForByteRange
+ * Signature: (Lai/serenade/treesitter/Node;IIZ)Lai/serenade/treesitter/Node;
+ */
+JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeDescendantForByteRange
+  (JNIEnv *, jclass, jobject, jint, jint, jboolean);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    nodeDescendantForPointRange
+ * Signature: (Lai/serenade/treesitter/Node;IIIIZ)Lai/serenade/treesitter/Node;
+ */
+JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeDescendantForPointRange
+  (JNIEnv *, jclass, jobject, jint, jint, jint, jint, jboolean);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    nodeFirstChildForByte
+ * Signature: (Lai/serenade/treesitter/Node;IZ)Lai/serenade/treesitter/Node;
+ */
+JNIEXPORT jobject JNICALL Java_ai_serenade_treesitter_TreeSitter_nodeFirstChildForByte
+  (JNIEnv *, jclass, jobject, jint, jboolean);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryNew
+ * Signature: (J[BI[I)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_queryNew
+  (JNIEnv *, jclass, jlong, jbyteArray, jint, jintArray);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryDelete
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_queryDelete
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryPatternCount
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_queryPatternCount
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryCaptureCount
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCaptureCount
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryCaptureName
+ * Signature: (JI)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCaptureName
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryCursorNew
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCursorNew
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryCursorDelete
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCursorDelete
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryCursorExec
+ * Signature: (JJLai/serenade/treesitter/Node;)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCursorExec
+  (JNIEnv *, jclass, jlong, jlong, jobject);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryCursorSetByteRange
+ * Signature: (JII)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCursorSetByteRange
+  (JNIEnv *, jclass, jlong, jint, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryCursorSetPointRange
+ * Signature: (JIIII)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCursorSetPointRange
+  (JNIEnv *, jclass, jlong, jint, jint, jint, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryCursorNextMatches
+ * Signature: (J[I)I
+ */
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCursorNextMatches
+  (JNIEnv *, jclass, jlong, jintArray);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    queryCursorNextCaptures
+ * Signature: (J[I)I
+ */
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_queryCursorNextCaptures
+  (JNIEnv *, jclass, jlong, jintArray);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    languageSymbolCount
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_languageSymbolCount
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    languageSymbolName
+ * Signature: (JI)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_languageSymbolName
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    languageSymbolType
+ * Signature: (JI)I
+ */
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_languageSymbolType
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    languageFieldCount
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_languageFieldCount
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    languageFieldName
+ * Signature: (JI)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_languageFieldName
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    languageLoad
+ * Signature: (Ljava/lang/String;Ljava/lang/String;[Ljava/lang/String;)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_languageLoad
+  (JNIEnv *, jclass, jstring, jstring, jobjectArray);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    metricsSetEnabled
+ * Signature: (Z)V
+ */
+JNIEXPORT void JNICALL Java_ai_serenade_treesitter_TreeSitter_metricsSetEnabled
+  (JNIEnv *, jclass, jboolean);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    metricsJniCallCount
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_ai_serenade_treesitter_TreeSitter_metricsJniCallCount
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    metricsJniCallName
+ * Signature: (I)Ljava/lang/String;
+ */
+JNIEXPORT jstring JNICALL Java_ai_serenade_treesitter_TreeSitter_metricsJniCallName
+  (JNIEnv *, jclass, jint);
+
+/*
+ * Class:     ai_serenade_treesitter_TreeSitter
+ * Method:    metricsJniCallValue
+ * Signature: (I)J
+ */
+JNIEXPORT jlong JNICALL Java_ai_serenade_treesitter_TreeSitter_metricsJniCallValue
+  (JNIEnv *, jclass, jint);
+
 #ifdef __cplusplus
 }
 #endif
@@ -0,0 +1,62 @@
+package ai.serenade.treesitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Compares the JNI and FFM `NodeNavigator` backends on a full traversal of one parsed file, reading the symbol,
+// byte range and start point of every node. Run it through `./gradlew -PwithFfm ffmBenchmark --args=<file>`;
+// without a file it parses a generated Java source.
+public class FfmBenchmark {
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) throws IOException {
+        String source = args.length > 0 ? Files.readString(Path.of(args[0])) : generatedSource();
+        try (var parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (var tree = parser.parseString(source)) {
+                for (String backend : new String[] {"jni", "ffm"}) {
+                    try (var navigator = NodeNavigators.create(backend)) {
+                        run(navigator, tree);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void run(NodeNavigator navigator, Tree tree) {
+        long nodes = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            nodes = traverse(navigator, tree);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            traverse(navigator, tree);
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%s: %d nodes, %.1f ns/node%n", navigator.name(), nodes, (double) nanos / ITERATIONS / nodes);
+    }
+
+    private static long traverse(NodeNavigator navigator, Tree tree) {
+        navigator.reset(tree);
+        return visit(navigator);
+    }
+
+    private static long visit(NodeNavigator navigator) {
+        // Fold the reads into the count so the JIT can't drop them.
+        long count = 1 + ((navigator.symbol() ^ navigator.startByte() ^ navigator.endByte() ^ navigator.startRow()) & 0);
+        int childCount = navigator.childCount();
+        for (int i = 0; i < childCount; i++) {
+            navigator.pushChild(i);
+            count += visit(navigator);
+            navigator.pop();
+        }
+        return count;
+    }
+
+    private static String generatedSource() {
+        var source = new StringBuilder("class Generated {\n");
+        for (int i = 0; i < 2000; i++)
+            source.append("  int f").append(i).append("(int a, int b) { return a * ").append(i).append(" + b; }\n");
+        return source.append("}\n").toString();
+    }
+}
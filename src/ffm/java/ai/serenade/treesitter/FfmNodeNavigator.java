@@ -0,0 +1,218 @@
+package ai.serenade.treesitter;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SegmentAllocator;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// `NodeNavigator` that calls the tree-sitter C API directly through the foreign function & memory API. Each level
+// of the stack is a 32-byte TSNode in a segment that is allocated once and reused, and struct results are written
+// straight into it, so navigating doesn't allocate Java objects or marshal fields one by one.
+// The tree-sitter symbols are looked up in the library that `TreeSitter` loaded.
+class FfmNodeNavigator implements NodeNavigator {
+    // typedef struct { uint32_t context[4]; const void *id; const TSTree *tree; } TSNode;
+    static final StructLayout TS_NODE = MemoryLayout.structLayout(
+            MemoryLayout.sequenceLayout(4, ValueLayout.JAVA_INT).withName("context"),
+            ValueLayout.ADDRESS.withName("id"),
+            ValueLayout.ADDRESS.withName("tree"));
+
+    // typedef struct { uint32_t row; uint32_t column; } TSPoint;
+    static final StructLayout TS_POINT = MemoryLayout.structLayout(
+            ValueLayout.JAVA_INT.withName("row"),
+            ValueLayout.JAVA_INT.withName("column"));
+
+    private static final int INITIAL_DEPTH = 64;
+
+    private static final MethodHandle treeRootNode;
+    private static final MethodHandle nodeChild;
+    private static final MethodHandle nodeChildCount;
+    private static final MethodHandle nodeSymbol;
+    private static final MethodHandle nodeStartByte;
+    private static final MethodHandle nodeEndByte;
+    private static final MethodHandle nodeStartPoint;
+    private static final MethodHandle nodeType;
+
+    static {
+        try {
+            // Initializing TreeSitter loads the native library into this class loader.
+            Class.forName(TreeSitter.class.getName());
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        var linker = Linker.nativeLinker();
+        var lookup = SymbolLookup.loaderLookup();
+        treeRootNode = downcall(linker, lookup, "ts_tree_root_node", FunctionDescriptor.of(TS_NODE, ValueLayout.ADDRESS));
+        nodeChild = downcall(linker, lookup, "ts_node_child", FunctionDescriptor.of(TS_NODE, TS_NODE, ValueLayout.JAVA_INT));
+        nodeChildCount = downcall(linker, lookup, "ts_node_child_count", FunctionDescriptor.of(ValueLayout.JAVA_INT, TS_NODE));
+        nodeSymbol = downcall(linker, lookup, "ts_node_symbol", FunctionDescriptor.of(ValueLayout.JAVA_SHORT, TS_NODE));
+        nodeStartByte = downcall(linker, lookup, "ts_node_start_byte", FunctionDescriptor.of(ValueLayout.JAVA_INT, TS_NODE));
+        nodeEndByte = downcall(linker, lookup, "ts_node_end_byte", FunctionDescriptor.of(ValueLayout.JAVA_INT, TS_NODE));
+        nodeStartPoint = downcall(linker, lookup, "ts_node_start_point", FunctionDescriptor.of(TS_POINT, TS_NODE));
+        nodeType = downcall(linker, lookup, "ts_node_type", FunctionDescriptor.of(ValueLayout.ADDRESS, TS_NODE));
+    }
+
+    private static MethodHandle downcall(Linker linker, SymbolLookup lookup, String name, FunctionDescriptor descriptor) {
+        var symbol = lookup.find(name).orElseThrow(() -> new UnsatisfiedLinkError("Missing tree-sitter symbol " + name));
+        return linker.downcallHandle(symbol, descriptor);
+    }
+
+    private final Arena arena = Arena.ofConfined();
+    private final MemorySegment point = arena.allocate(TS_POINT);
+    private final SegmentAllocator pointAllocator = (byteSize, byteAlignment) -> point;
+    // One TSNode per level of the stack, and an allocator that hands the level's segment to the downcall.
+    private MemorySegment[] nodes = new MemorySegment[0];
+    private SegmentAllocator[] allocators = new SegmentAllocator[0];
+    private int depth = -1;
+    // tree-sitter counts UTF-16 in bytes, and the bindings report code units, like `Node` does.
+    private int offsetShift;
+
+    private void ensureDepth(int level) {
+        if (level < nodes.length)
+            return;
+        int size = Math.max(INITIAL_DEPTH, nodes.length * 2);
+        var grownNodes = Arrays.copyOf(nodes, size);
+        var grownAllocators = Arrays.copyOf(allocators, size);
+        for (int i = nodes.length; i < size; i++) {
+            var segment = arena.allocate(TS_NODE);
+            grownNodes[i] = segment;
+            grownAllocators[i] = (byteSize, byteAlignment) -> segment;
+        }
+        nodes = grownNodes;
+        allocators = grownAllocators;
+    }
+
+    private MemorySegment current() {
+        return nodes[depth];
+    }
+
+    @Override
+    public void reset(Tree tree) {
+        depth = 0;
+        offsetShift = tree.getEncoding() == InputEncoding.UTF16 ? 1 : 0;
+        ensureDepth(0);
+        try {
+            MemorySegment root = (MemorySegment) treeRootNode.invokeExact(allocators[0], MemorySegment.ofAddress(tree.getPointer()));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public void pushChild(int index) {
+        ensureDepth(depth + 1);
+        try {
+            MemorySegment child = (MemorySegment) nodeChild.invokeExact(allocators[depth + 1], current(), index);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        depth++;
+    }
+
+    @Override
+    public void pop() {
+        depth--;
+    }
+
+    @Override
+    public int depth() {
+        return depth;
+    }
+
+    @Override
+    public int childCount() {
+        try {
+            return (int) nodeChildCount.invokeExact(current());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int symbol() {
+        try {
+            return Short.toUnsignedInt((short) nodeSymbol.invokeExact(current()));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int startByte() {
+        try {
+            int startByte = (int) nodeStartByte.invokeExact(current());
+            return startByte >> offsetShift;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int endByte() {
+        try {
+            int endByte = (int) nodeEndByte.invokeExact(current());
+            return endByte >> offsetShift;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private MemorySegment startPoint() {
+        try {
+            return (MemorySegment) nodeStartPoint.invokeExact(pointAllocator, current());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public int startRow() {
+        return startPoint().get(ValueLayout.JAVA_INT, 0);
+    }
+
+    @Override
+    public int startColumn() {
+        return startPoint().get(ValueLayout.JAVA_INT, 4) >> offsetShift;
+    }
+
+    @Override
+    public String type() {
+        MemorySegment name;
+        try {
+            name = (MemorySegment) nodeType.invokeExact(current());
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        // The result is a null-terminated C string of unknown length.
+        var string = name.reinterpret(Integer.MAX_VALUE);
+        int length = 0;
+        while (string.get(ValueLayout.JAVA_BYTE, length) != 0)
+            length++;
+        return new String(string.asSlice(0, length).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String name() {
+        return "ffm";
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException e)
+            return e;
+        if (t instanceof Error e)
+            throw e;
+        return new RuntimeException(t);
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,79 @@
+package ai.serenade.treesitter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// `NodeNavigator` over the JNI bindings: every step marshals a `Node` through TreeSitter's static natives.
+class JniNodeNavigator implements NodeNavigator {
+    private final List<Node> stack = new ArrayList<>();
+
+    @Override
+    public void reset(Tree tree) {
+        stack.clear();
+        stack.add(tree.getRootNode());
+    }
+
+    private Node current() {
+        return stack.get(stack.size() - 1);
+    }
+
+    @Override
+    public void pushChild(int index) {
+        stack.add(current().getChild(index));
+    }
+
+    @Override
+    public void pop() {
+        stack.remove(stack.size() - 1);
+    }
+
+    @Override
+    public int depth() {
+        return stack.size() - 1;
+    }
+
+    @Override
+    public int childCount() {
+        return current().getChildCount();
+    }
+
+    @Override
+    public int symbol() {
+        return current().getSymbol();
+    }
+
+    @Override
+    public int startByte() {
+        return current().getStartByte();
+    }
+
+    @Override
+    public int endByte() {
+        return current().getEndByte();
+    }
+
+    @Override
+    public int startRow() {
+        return TreeSitter.nodeStartPoint(current()).row;
+    }
+
+    @Override
+    public int startColumn() {
+        return TreeSitter.nodeStartPoint(current()).column;
+    }
+
+    @Override
+    public String type() {
+        return current().getType();
+    }
+
+    @Override
+    public String name() {
+        return "jni";
+    }
+
+    @Override
+    public void close() {
+        stack.clear();
+    }
+}
@@ -0,0 +1,37 @@
+package ai.serenade.treesitter;
+
+// Moves around a tree one node at a time through a stack of ancestors, and reads the node on top of the stack.
+// It's the access pattern of the hot loops in analyzers, expressed so that it can be backed either by the JNI
+// bindings or by direct FFM downcalls. See `NodeNavigators` for picking one at runtime.
+// A navigator isn't thread-safe, and it must not outlive the tree it was reset to.
+public interface NodeNavigator extends AutoCloseable {
+    // Clears the stack and pushes the root of `tree`.
+    void reset(Tree tree);
+
+    // Pushes the child at `index` of the current node.
+    void pushChild(int index);
+
+    // Pops the current node, going back to its parent.
+    void pop();
+
+    int depth();
+
+    int childCount();
+
+    int symbol();
+
+    int startByte();
+
+    int endByte();
+
+    int startRow();
+
+    int startColumn();
+
+    String type();
+
+    String name();
+
+    @Override
+    void close();
+}
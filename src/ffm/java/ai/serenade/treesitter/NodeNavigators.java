@@ -0,0 +1,22 @@
+package ai.serenade.treesitter;
+
+// Picks the `NodeNavigator` backend at runtime. The `ai.serenade.treesitter.backend` system property can be
+// `jni` (the default) or `ffm`. The FFM backend needs JDK 22+ and `--enable-native-access=ALL-UNNAMED`.
+public final class NodeNavigators {
+    public static final String BACKEND_PROPERTY = "ai.serenade.treesitter.backend";
+
+    private NodeNavigators() {
+    }
+
+    public static NodeNavigator create() {
+        return create(System.getProperty(BACKEND_PROPERTY, "jni"));
+    }
+
+    public static NodeNavigator create(String backend) {
+        return switch (backend) {
+            case "jni" -> new JniNodeNavigator();
+            case "ffm" -> new FfmNodeNavigator();
+            default -> throw new IllegalArgumentException("Unknown tree-sitter backend: " + backend);
+        };
+    }
+}
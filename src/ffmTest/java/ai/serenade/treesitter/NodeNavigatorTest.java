@@ -0,0 +1,63 @@
+package ai.serenade.treesitter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+// Both backends have to see the same tree, offsets included.
+public class NodeNavigatorTest extends TestBase {
+    private static final String SOURCE = "class A {\n    String s = \"h\u00e9llo \u20ac\";\n    int f() { return 1; }\n}\n";
+
+    // Every node in pre-order, one line each.
+    private static String dump(NodeNavigator navigator, Tree tree) {
+        var builder = new StringBuilder();
+        navigator.reset(tree);
+        dump(navigator, builder);
+        return builder.toString();
+    }
+
+    private static void dump(NodeNavigator navigator, StringBuilder builder) {
+        builder.append(navigator.depth()).append(' ')
+                .append(navigator.type()).append(' ')
+                .append(navigator.symbol()).append(' ')
+                .append(navigator.startByte()).append('-').append(navigator.endByte()).append(' ')
+                .append(navigator.startRow()).append(':').append(navigator.startColumn()).append('\n');
+        int count = navigator.childCount();
+        for (int i = 0; i < count; i++) {
+            navigator.pushChild(i);
+            dump(navigator, builder);
+            navigator.pop();
+        }
+    }
+
+    private static void assertBackendsAgree(Tree tree) {
+        try (var jni = NodeNavigators.create("jni"); var ffm = NodeNavigators.create("ffm")) {
+            assertEquals(dump(jni, tree), dump(ffm, tree));
+        }
+    }
+
+    @Test
+    void testUtf8() throws Exception {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (Tree tree = parser.parseString(SOURCE)) {
+                assertBackendsAgree(tree);
+            }
+        }
+    }
+
+    @Test
+    void testUtf16() {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (Tree tree = parser.parseUtf16(SOURCE)) {
+                assertBackendsAgree(tree);
+                // And what they agree on is in code units.
+                try (var ffm = NodeNavigators.create("ffm")) {
+                    ffm.reset(tree);
+                    assertEquals(SOURCE.length(), ffm.endByte());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ai.serenade.treesitter.benchmark;
+
+// Deterministic Java inputs of a few sizes, so numbers stay comparable between runs and machines.
+final class BenchmarkSources {
+    private BenchmarkSources() {
+    }
+
+    static String of(String size) {
+        return switch (size) {
+            case "small" -> javaSource(1);
+            case "medium" -> javaSource(40);
+            case "huge" -> javaSource(2000);
+            default -> throw new IllegalArgumentException("Unknown input size: " + size);
+        };
+    }
+
+    // Each method is about 20 lines, with the usual mix of declarations, control flow, calls and comments.
+    private static String javaSource(int methods) {
+        var builder = new StringBuilder();
+        builder.append("package bench;\n\n");
+        builder.append("import java.util.ArrayList;\nimport java.util.List;\n\n");
+        builder.append("public class Generated {\n");
+        builder.append("    private final List<String> names = new ArrayList<>();\n\n");
+        for (int i = 0; i < methods; i++) {
+            builder.append("    // Adds the names that pass filter ").append(i).append(".\n");
+            builder.append("    public int method").append(i).append("(List<String> input, int limit) {\n");
+            builder.append("        int count = 0;\n");
+            builder.append("        for (String s : (List<String>) input) {\n");
+            builder.append("            if (s.length() > ").append(i % 17).append(" && count < limit) {\n");
+            builder.append("                names.add(s.trim().toLowerCase());\n");
+            builder.append("                count += 1;\n");
+            builder.append("            } else {\n");
+            builder.append("                System.out.println(\"skipped \" + s);\n");
+            builder.append("            }\n");
+            builder.append("        }\n");
+            builder.append("        try {\n");
+            builder.append("            return Math.max(count, Integer.parseInt(\"").append(i).append("\"));\n");
+            builder.append("        } catch (NumberFormatException e) {\n");
+            builder.append("            return -1;\n");
+            builder.append("        }\n");
+            builder.append("    }\n\n");
+        }
+        builder.append("}\n");
+        return builder.toString();
+    }
+}
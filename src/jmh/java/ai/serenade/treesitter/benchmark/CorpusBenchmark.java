@@ -0,0 +1,155 @@
+package ai.serenade.treesitter.benchmark;
+
+import ai.serenade.treesitter.Languages;
+import ai.serenade.treesitter.ParserPool;
+import ai.serenade.treesitter.Tree;
+import mytree.MyNode;
+import mytree.Span;
+import mytree.TreeWrapper;
+import srcgen.DeleteNode;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// End-to-end throughput of the autofix path over a synthetic corpus: every file is parsed, wrapped in a
+// `TreeWrapper`, has its redundant casts removed with `DeleteNode` actions and is regenerated.
+// Run it with `./gradlew corpusBenchmark --args="--size-mb 50 --threads 8"`. Options:
+//   --size-mb N   corpus size (default 20)
+//   --seed N      corpus seed (default 42)
+//   --corpus DIR  where the corpus is generated and reused from (default build/corpus)
+//   --threads N   files processed concurrently (default 1)
+//   --warmup N    passes over the corpus before measuring (default 1)
+public class CorpusBenchmark {
+    private static final long MB = 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        long sizeMb = 20;
+        long seed = 42;
+        Path corpus = Path.of("build", "corpus");
+        int threads = 1;
+        int warmup = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--size-mb" -> sizeMb = Long.parseLong(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--corpus" -> corpus = Path.of(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        var files = new CorpusGenerator(sizeMb * MB, seed).generate(corpus);
+        var sources = new ArrayList<String>(files.size());
+        long totalBytes = 0;
+        for (var file : files) {
+            var source = Files.readString(file);
+            sources.add(source);
+            totalBytes += source.length();
+        }
+        System.out.printf("Corpus: %d files, %.1f MB in %s%n", files.size(), (double) totalBytes / MB, corpus);
+
+        var executor = Executors.newFixedThreadPool(threads);
+        try (var pool = new ParserPool()) {
+            for (int i = 0; i < warmup; i++)
+                run(sources, pool, executor);
+
+            var heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(memoryPool -> memoryPool.getType() == MemoryType.HEAP)
+                    .toList();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            long start = System.nanoTime();
+            var latencies = run(sources, pool, executor);
+            long nanos = System.nanoTime() - start;
+            // The pools peak at different times, so their sum is an upper bound on the peak heap.
+            long peakHeap = heapPools.stream().mapToLong(memoryPool -> memoryPool.getPeakUsage().getUsed()).sum();
+
+            Arrays.sort(latencies);
+            System.out.printf("Files/s:    %.1f%n", files.size() * 1e9 / nanos);
+            System.out.printf("MB/s:       %.2f%n", totalBytes * 1e9 / nanos / MB);
+            System.out.printf("p50:        %.3f ms%n", percentile(latencies, 0.50) / 1e6);
+            System.out.printf("p99:        %.3f ms%n", percentile(latencies, 0.99) / 1e6);
+            System.out.printf("Peak heap:  %.1f MB%n", (double) peakHeap / MB);
+            long peakRss = peakResidentBytes();
+            // Tree-sitter allocates with malloc, so native memory only shows up in the process' resident set.
+            if (peakRss >= 0)
+                System.out.printf("Peak RSS:   %.1f MB (heap + native, whole run)%n", (double) peakRss / MB);
+            else
+                System.out.println("Peak RSS:   unavailable on this platform");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Processes every source once and returns the latency of each, in nanoseconds.
+    private static long[] run(List<String> sources, ParserPool pool, ExecutorService executor) throws Exception {
+        var latencies = new long[sources.size()];
+        var output = new AtomicLong();
+        var futures = new ArrayList<Future<?>>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                long start = System.nanoTime();
+                output.addAndGet(autofix(pool, sources.get(index)).length());
+                latencies[index] = System.nanoTime() - start;
+                return null;
+            }));
+        }
+        for (var future : futures)
+            future.get();
+        if (output.get() == 0)
+            throw new IllegalStateException("Nothing was generated");
+        return latencies;
+    }
+
+    private static String autofix(ParserPool pool, String source) throws IOException {
+        try (var lease = pool.lease(Languages.java()); Tree tree = lease.parser().parseString(source)) {
+            var wrapper = new TreeWrapper(tree, source);
+            var spans = new ArrayList<Span>();
+            collectCastParts(wrapper.root(), spans);
+            for (var span : spans)
+                new DeleteNode(wrapper, span).apply();
+            return wrapper.generateSource();
+        }
+    }
+
+    // The parentheses and type of every cast, i.e. everything but the value being cast.
+    private static void collectCastParts(MyNode node, List<Span> spans) {
+        if (node.getInternalNode().getType().equals("cast_expression")) {
+            var children = node.children();
+            for (int i = 0; i < children.size() - 1; i++)
+                spans.add(children.get(i).span());
+        }
+        for (var child : node.children())
+            collectCastParts(child, spans);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    // The high-water mark of the resident set size, from /proc on Linux, or -1 elsewhere.
+    private static long peakResidentBytes() {
+        try {
+            for (var line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:"))
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Not Linux.
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,122 @@
+package ai.serenade.treesitter.benchmark;
+
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+
+import javax.lang.model.element.Modifier;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+// Writes a synthetic Java corpus of roughly `sizeBytes` to a directory, using JavaPoet. The same seed and size
+// always give the same files, so runs on different machines are comparable. Every file has a few redundant
+// `(List<String>)` casts for the autofix pipeline to remove.
+final class CorpusGenerator {
+    private static final String MARKER = "corpus.properties";
+
+    private final long sizeBytes;
+    private final long seed;
+
+    CorpusGenerator(long sizeBytes, long seed) {
+        this.sizeBytes = sizeBytes;
+        this.seed = seed;
+    }
+
+    // Generates the corpus unless `directory` already holds one made with the same size and seed.
+    List<Path> generate(Path directory) throws IOException {
+        var marker = directory.resolve(MARKER);
+        var expected = new Properties();
+        expected.setProperty("sizeBytes", Long.toString(sizeBytes));
+        expected.setProperty("seed", Long.toString(seed));
+        if (Files.exists(marker)) {
+            var existing = new Properties();
+            try (var reader = Files.newBufferedReader(marker)) {
+                existing.load(reader);
+            }
+            if (existing.equals(expected))
+                return list(directory);
+        }
+
+        Files.createDirectories(directory);
+        try (var files = Files.walk(directory)) {
+            for (var path : files.filter(path -> path.toString().endsWith(".java")).toList())
+                Files.delete(path);
+        }
+        var random = new Random(seed);
+        long written = 0;
+        for (int i = 0; written < sizeBytes; i++) {
+            String packageName = "corpus.p" + (i % 16);
+            String source = JavaFile.builder(packageName, generateClass("Generated" + i, random)).build().toString();
+            var path = directory.resolve(packageName.replace('.', '/')).resolve("Generated" + i + ".java");
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, source);
+            written += source.length();
+        }
+        try (var writer = Files.newBufferedWriter(marker)) {
+            expected.store(writer, null);
+        }
+        return list(directory);
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            return new ArrayList<>(files.filter(path -> path.toString().endsWith(".java")).sorted().toList());
+        }
+    }
+
+    private static TypeSpec generateClass(String name, Random random) {
+        var klass = TypeSpec.classBuilder(name).addModifiers(Modifier.PUBLIC);
+        int fields = 1 + random.nextInt(8);
+        for (int i = 0; i < fields; i++) {
+            klass.addField(FieldSpec.builder(int.class, "field" + i, Modifier.PRIVATE)
+                    .initializer("$L", random.nextInt(1000))
+                    .build());
+        }
+        klass.addMethod(MethodSpec.methodBuilder("items")
+                .addModifiers(Modifier.PUBLIC)
+                .returns(List.class)
+                .addStatement("return $T.of($S, $S)", List.class, "a", "b")
+                .build());
+        int methods = 5 + random.nextInt(60);
+        for (int i = 0; i < methods; i++)
+            klass.addMethod(generateMethod("method" + i, fields, random));
+        return klass.build();
+    }
+
+    private static MethodSpec generateMethod(String name, int fields, Random random) {
+        var method = MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(int.class)
+                .addParameter(int.class, "limit")
+                .addStatement("int total = field$L", random.nextInt(fields));
+        switch (random.nextInt(3)) {
+            case 0 -> method
+                    .addCode("// The cast is redundant.\n")
+                    .beginControlFlow("for (String s : ($T<String>) items())", List.class)
+                    .addStatement("total += s.length()")
+                    .endControlFlow();
+            case 1 -> method
+                    .beginControlFlow("for (int i = 0; i < limit; i++)")
+                    .beginControlFlow("if (i % $L == 0)", 2 + random.nextInt(7))
+                    .addStatement("total += i * field$L", random.nextInt(fields))
+                    .nextControlFlow("else")
+                    .addStatement("total -= $T.max(i, $L)", Math.class, random.nextInt(100))
+                    .endControlFlow()
+                    .endControlFlow();
+            default -> method
+                    .addStatement("$T<String> names = ($T<String>) items()", List.class, List.class)
+                    .beginControlFlow("try")
+                    .addStatement("total += $T.parseInt(names.get(0), $L)", Integer.class, 16 + random.nextInt(2) * 20)
+                    .nextControlFlow("catch ($T e)", NumberFormatException.class)
+                    .addStatement("$T.out.println($S + e)", System.class, "not a number: ")
+                    .endControlFlow();
+        }
+        return method.addStatement("return total").build();
+    }
+}
@@ -0,0 +1,50 @@
+package ai.serenade.treesitter.benchmark;
+
+import ai.serenade.treesitter.Languages;
+import ai.serenade.treesitter.Parser;
+import ai.serenade.treesitter.Tree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private String source;
+    private Parser parser;
+
+    @Setup
+    public void setUp() throws UnsupportedEncodingException {
+        source = BenchmarkSources.of(size);
+        parser = new Parser();
+        parser.setLanguage(Languages.java());
+    }
+
+    @TearDown
+    public void tearDown() {
+        parser.close();
+    }
+
+    // The tree is closed in the measurement: freeing it is cheap next to parsing, and a per-invocation teardown
+    // would cost more than that for the small sources.
+    @Benchmark
+    public void parseString(Blackhole blackhole) throws UnsupportedEncodingException {
+        try (Tree tree = parser.parseString(source)) {
+            blackhole.consume(tree);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ai.serenade.treesitter.benchmark;
+
+import ai.serenade.treesitter.Languages;
+import ai.serenade.treesitter.Node;
+import ai.serenade.treesitter.Parser;
+import ai.serenade.treesitter.Tree;
+import ai.serenade.treesitter.TreeCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+// Walks every node of a parsed tree, either with a `TreeCursor` or through the `Node` getters.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TraversalBenchmark {
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private Parser parser;
+    private Tree tree;
+
+    @Setup
+    public void setUp() throws UnsupportedEncodingException {
+        parser = new Parser();
+        parser.setLanguage(Languages.java());
+        tree = parser.parseString(BenchmarkSources.of(size));
+    }
+
+    @TearDown
+    public void tearDown() {
+        tree.close();
+        parser.close();
+    }
+
+    @Benchmark
+    public void treeCursor(Blackhole blackhole) {
+        try (TreeCursor cursor = tree.getRootNode().walk()) {
+            boolean more = true;
+            while (more) {
+                blackhole.consume(cursor.getCurrentTreeCursorNode());
+                if (cursor.gotoFirstChild())
+                    continue;
+                while (!cursor.gotoNextSibling()) {
+                    if (!cursor.gotoParent()) {
+                        more = false;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void nodeGetters(Blackhole blackhole) {
+        visit(tree.getRootNode(), blackhole);
+    }
+
+    private static void visit(Node node, Blackhole blackhole) {
+        blackhole.consume(node.getType());
+        blackhole.consume(node.getStartByte());
+        blackhole.consume(node.getEndByte());
+        blackhole.consume(node.getRange());
+        int childCount = node.getChildCount();
+        for (int i = 0; i < childCount; i++)
+            visit(node.getChild(i), blackhole);
+    }
+}
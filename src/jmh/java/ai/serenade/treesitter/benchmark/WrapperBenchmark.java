@@ -0,0 +1,81 @@
+package ai.serenade.treesitter.benchmark;
+
+import ai.serenade.treesitter.Languages;
+import ai.serenade.treesitter.Parser;
+import ai.serenade.treesitter.Tree;
+import mytree.MyNode;
+import mytree.Span;
+import mytree.TreeWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Building a `TreeWrapper`, looking nodes up by span and regenerating source from it.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WrapperBenchmark {
+    @Param({"small", "medium", "huge"})
+    public String size;
+
+    private String source;
+    private Parser parser;
+    private Tree tree;
+    private TreeWrapper wrapper;
+    // Leaf spans spread over the whole file, looked up round-robin.
+    private Span[] spans;
+    private int nextSpan;
+
+    @Setup
+    public void setUp() throws UnsupportedEncodingException {
+        source = BenchmarkSources.of(size);
+        parser = new Parser();
+        parser.setLanguage(Languages.java());
+        tree = parser.parseString(source);
+        wrapper = new TreeWrapper(tree, source);
+        var leaves = new ArrayList<Span>();
+        collectLeaves(wrapper.root(), leaves);
+        spans = leaves.toArray(new Span[0]);
+    }
+
+    private static void collectLeaves(MyNode node, List<Span> leaves) {
+        if (node.isLeaf())
+            leaves.add(node.span());
+        for (var child : node.children())
+            collectLeaves(child, leaves);
+    }
+
+    @TearDown
+    public void tearDown() {
+        tree.close();
+        parser.close();
+    }
+
+    @Benchmark
+    public TreeWrapper construct() {
+        return new TreeWrapper(tree, source);
+    }
+
+    @Benchmark
+    public MyNode nodeAtSpan() {
+        var span = spans[nextSpan];
+        nextSpan = (nextSpan + 1) % spans.length;
+        return wrapper.nodeAtSpan(span);
+    }
+
+    @Benchmark
+    public String generateSource() {
+        return wrapper.generateSource();
+    }
+}
@@ -0,0 +1,260 @@
+package ai.serenade.treesitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// Parses many sources across all cores. Parsers come from a shared `ParserPool` and run on any `Executor`: the
+// default is the common fork-join pool, and on JDK 21+ a virtual-thread-per-task executor works just as well.
+// The number of source bytes whose trees are still alive is bounded, so a job over a huge tree of files doesn't
+// pile up native memory: submitting blocks until earlier results have been consumed.
+// Each result is handed to the consumer and its tree is closed as soon as the consumer returns, so the consumer
+// must not keep the tree (or nodes from it) around. With `ordered` set, results are delivered one at a time in
+// input order; otherwise they are delivered as they finish, concurrently from the worker threads.
+public class BatchParser {
+    public static final long DEFAULT_MAX_BYTES_IN_FLIGHT = 256L * 1024 * 1024;
+
+    // Picks the language for a path, or returns 0 to skip the path.
+    @FunctionalInterface
+    public interface LanguageResolver {
+        long resolve(Path path);
+    }
+
+    public record Source(String name, String content, long language) {
+    }
+
+    // `tree` is null if parsing failed, in which case `error` says why.
+    public record Result(String name, Tree tree, long bytes, long parseNanos, Throwable error) {
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    public record Stats(long files, long failed, long bytes, long nanos) {
+        public double filesPerSecond() {
+            return nanos == 0 ? 0 : files * 1e9 / nanos;
+        }
+
+        public double bytesPerSecond() {
+            return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d files (%d failed), %d bytes in %.3f s: %.1f files/s, %.1f MB/s",
+                    files, failed, bytes, nanos / 1e9, filesPerSecond(), bytesPerSecond() / (1024 * 1024));
+        }
+    }
+
+    private interface Job {
+        String name();
+
+        long size();
+
+        long language();
+
+        Tree parse(Parser parser) throws IOException;
+    }
+
+    private final ParserPool parserPool;
+    private final Executor executor;
+    private final int maxPermits;
+    private final boolean ordered;
+
+    public BatchParser(ParserPool parserPool, Executor executor, long maxBytesInFlight, boolean ordered) {
+        if (maxBytesInFlight <= 0)
+            throw new IllegalArgumentException("maxBytesInFlight must be positive");
+        this.parserPool = parserPool;
+        this.executor = executor;
+        this.maxPermits = (int) Math.min(Integer.MAX_VALUE, maxBytesInFlight);
+        this.ordered = ordered;
+    }
+
+    public BatchParser(ParserPool parserPool, boolean ordered) {
+        this(parserPool, ForkJoinPool.commonPool(), DEFAULT_MAX_BYTES_IN_FLIGHT, ordered);
+    }
+
+    // Parses every path that `resolver` knows a language for. Blocks until every result has been consumed.
+    public Stats parsePaths(Stream<Path> paths, LanguageResolver resolver, Consumer<Result> consumer) {
+        Stream<Job> jobs = paths.map(path -> {
+            long language = resolver.resolve(path);
+            if (language == 0)
+                return null;
+            long size;
+            try {
+                size = Files.size(path);
+            } catch (IOException e) {
+                size = 0;
+            }
+            return pathJob(path, language, size);
+        });
+        return run(jobs, consumer);
+    }
+
+    // Parses every source. Blocks until every result has been consumed.
+    public Stats parseSources(Stream<Source> sources, Consumer<Result> consumer) {
+        return run(sources.map(BatchParser::sourceJob), consumer);
+    }
+
+    private static Job pathJob(Path path, long language, long size) {
+        return new Job() {
+            public String name() {
+                return path.toString();
+            }
+
+            public long size() {
+                return size;
+            }
+
+            public long language() {
+                return language;
+            }
+
+            public Tree parse(Parser parser) throws IOException {
+                return parser.parse(path);
+            }
+        };
+    }
+
+    // Sized in UTF-8 bytes, which is what `parseString` hands to tree-sitter, so that sources and files are
+    // budgeted and reported in the same unit.
+    private static Job sourceJob(Source source) {
+        long size = InputEncoding.UTF8.byteLength(source.content());
+        return new Job() {
+            public String name() {
+                return source.name();
+            }
+
+            public long size() {
+                return size;
+            }
+
+            public long language() {
+                return source.language();
+            }
+
+            public Tree parse(Parser parser) throws IOException {
+                return parser.parseString(source.content());
+            }
+        };
+    }
+
+    private Stats run(Stream<Job> jobs, Consumer<Result> consumer) {
+        var run = new Run(consumer);
+        long start = System.nanoTime();
+        int submitted = 0;
+        try {
+            Iterator<Job> iterator = jobs.iterator();
+            while (iterator.hasNext() && run.failure.get() == null) {
+                var job = iterator.next();
+                if (job == null)
+                    continue;
+                int permits = (int) Math.max(1, Math.min(maxPermits, job.size()));
+                run.inFlight.acquireUninterruptibly(permits);
+                long sequence = submitted;
+                executor.execute(() -> run.parse(job, sequence, permits));
+                submitted++;
+            }
+        } finally {
+            // Wait for everything we submitted, even if iterating the input failed.
+            run.done.acquireUninterruptibly(submitted);
+        }
+        if (run.failure.get() != null)
+            throw new RuntimeException("A batch consumer failed", run.failure.get());
+        return new Stats(run.files.sum(), run.failed.sum(), run.bytes.sum(), System.nanoTime() - start);
+    }
+
+    // The state of one call to `parsePaths` or `parseSources`.
+    private class Run {
+        final Consumer<Result> consumer;
+        final Semaphore inFlight = new Semaphore(maxPermits);
+        final Semaphore done = new Semaphore(0);
+        final LongAdder files = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Only used when results are delivered in order.
+        final Map<Long, Result> waiting = new ConcurrentHashMap<>();
+        final Map<Long, Integer> waitingPermits = new ConcurrentHashMap<>();
+        final ReentrantLock deliveryLock = new ReentrantLock();
+        volatile long nextSequence = 0;
+
+        Run(Consumer<Result> consumer) {
+            this.consumer = consumer;
+        }
+
+        void parse(Job job, long sequence, int permits) {
+            Result result;
+            long start = System.nanoTime();
+            try (var lease = parserPool.lease(job.language())) {
+                var tree = job.parse(lease.parser());
+                result = new Result(job.name(), tree, job.size(), System.nanoTime() - start, null);
+            } catch (IOException e) {
+                result = new Result(job.name(), null, job.size(), System.nanoTime() - start, new UncheckedIOException(e));
+            } catch (Throwable t) {
+                // Errors too (e.g. a StackOverflowError on deeply nested input): every job has to be delivered, or
+                // `run` waits for it forever.
+                result = new Result(job.name(), null, job.size(), System.nanoTime() - start, t);
+            }
+
+            if (ordered) {
+                waitingPermits.put(sequence, permits);
+                waiting.put(sequence, result);
+                deliverInOrder();
+            } else {
+                deliver(result, permits);
+            }
+        }
+
+        private void deliverInOrder() {
+            while (true) {
+                // Whoever holds the lock delivers every result that is ready; the others just leave theirs behind.
+                if (!deliveryLock.tryLock())
+                    return;
+                try {
+                    Result result;
+                    while ((result = waiting.remove(nextSequence)) != null) {
+                        deliver(result, waitingPermits.remove(nextSequence));
+                        nextSequence++;
+                    }
+                } finally {
+                    deliveryLock.unlock();
+                }
+                // A result may have arrived after we looked and before we unlocked.
+                if (!waiting.containsKey(nextSequence))
+                    return;
+            }
+        }
+
+        private void deliver(Result result, int permits) {
+            files.increment();
+            bytes.add(result.bytes());
+            if (result.failed())
+                failed.increment();
+            try {
+                if (failure.get() == null)
+                    consumer.accept(result);
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                if (result.tree() != null)
+                    result.tree().close();
+                inFlight.release(permits);
+                done.release();
+            }
+        }
+    }
+}
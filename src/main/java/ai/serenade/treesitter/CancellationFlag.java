@@ -0,0 +1,40 @@
+package ai.serenade.treesitter;
+
+// A flag that parsers poll while they parse, so that a parse can be stopped from another thread. One flag can be
+// shared by several parsers, e.g. to cancel everything a request started. See `Parser.setCancellationFlag`.
+// The flag must stay open as long as any parser uses it.
+public class CancellationFlag implements AutoCloseable {
+    private long pointer;
+
+    public CancellationFlag() {
+        pointer = TreeSitter.cancellationFlagNew();
+    }
+
+    long getPointer() {
+        if (pointer == 0)
+            throw new IllegalStateException("This cancellation flag is closed.");
+        return pointer;
+    }
+
+    // Makes every parse using this flag stop with a `ParseAbortedException` as soon as it notices.
+    public void cancel() {
+        TreeSitter.cancellationFlagSet(getPointer(), true);
+    }
+
+    // Clears the flag, so that aborted parses can be resumed.
+    public void clear() {
+        TreeSitter.cancellationFlagSet(getPointer(), false);
+    }
+
+    public boolean isCancelled() {
+        return TreeSitter.cancellationFlagGet(getPointer());
+    }
+
+    @Override
+    public void close() {
+        if (pointer == 0)
+            return;
+        TreeSitter.cancellationFlagDelete(pointer);
+        pointer = 0;
+    }
+}
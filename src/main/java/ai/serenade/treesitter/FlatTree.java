@@ -0,0 +1,110 @@
+package ai.serenade.treesitter;
+
+// A read-only view over a tree that was exported with a single native call. Nodes are numbered in pre-order
+// (the root is 0) and every accessor is a plain array read, so analyzers can look at the whole tree without
+// touching JNI again. The view stays valid after the `Tree` is closed, except for `getNode`, whose handles
+// point into the native tree. `Tree.exportChildren` returns the same view over a single level of the tree.
+public class FlatTree {
+    static final int PARENT = NodeRecord.SIZE;
+    static final int FIELD_ID = NodeRecord.SIZE + 1;
+    static final int STRIDE = NodeRecord.SIZE + 2;
+
+    private final long tree;
+    private final Language language;
+    private final int[] records;
+    private final InputEncoding encoding;
+
+    FlatTree(long tree, Language language, int[] records, InputEncoding encoding) {
+        this.tree = tree;
+        this.language = language;
+        this.records = records;
+        this.encoding = encoding;
+    }
+
+    // The encoding of the exported tree. For UTF-16, offsets and columns are in code units.
+    public InputEncoding getEncoding() {
+        return encoding;
+    }
+
+    public Language getLanguage() {
+        return language;
+    }
+
+    public int size() {
+        return records.length / STRIDE;
+    }
+
+    public int getSymbol(int index) {
+        return records[index * STRIDE + NodeRecord.SYMBOL];
+    }
+
+    // The interned type name, same as `Node.getType`.
+    public String getType(int index) {
+        return language.getSymbolName(getSymbol(index));
+    }
+
+    // The index of the parent node, or -1 for the root.
+    public int getParent(int index) {
+        return records[index * STRIDE + PARENT];
+    }
+
+    // The id of the field this node is stored under in its parent, or 0 if it has none.
+    public int getFieldId(int index) {
+        return records[index * STRIDE + FIELD_ID];
+    }
+
+    public int getStartByte(int index) {
+        return records[index * STRIDE + NodeRecord.START_BYTE];
+    }
+
+    public int getEndByte(int index) {
+        return records[index * STRIDE + NodeRecord.END_BYTE];
+    }
+
+    public int getStartRow(int index) {
+        return records[index * STRIDE + NodeRecord.START_ROW];
+    }
+
+    public int getStartColumn(int index) {
+        return records[index * STRIDE + NodeRecord.START_COL];
+    }
+
+    public int getEndRow(int index) {
+        return records[index * STRIDE + NodeRecord.END_ROW];
+    }
+
+    public int getEndColumn(int index) {
+        return records[index * STRIDE + NodeRecord.END_COL];
+    }
+
+    public Range getRange(int index) {
+        return NodeRecord.toRange(records, index * STRIDE);
+    }
+
+    public boolean isNamed(int index) {
+        return NodeRecord.hasFlag(records, index * STRIDE, NodeRecord.FLAG_NAMED);
+    }
+
+    public boolean hasError(int index) {
+        return NodeRecord.hasFlag(records, index * STRIDE, NodeRecord.FLAG_HAS_ERROR);
+    }
+
+    public boolean isMissing(int index) {
+        return NodeRecord.hasFlag(records, index * STRIDE, NodeRecord.FLAG_MISSING);
+    }
+
+    public boolean isExtra(int index) {
+        return NodeRecord.hasFlag(records, index * STRIDE, NodeRecord.FLAG_EXTRA);
+    }
+
+    // Same as `Node.getId`.
+    public long getId(int index) {
+        return (records[index * STRIDE + NodeRecord.ID_HIGH] & 0xffffffffL) << 32
+                | (records[index * STRIDE + NodeRecord.ID_LOW] & 0xffffffffL);
+    }
+
+    // Rebuilds the tree-sitter handle for this node without a native call. The tree must still be open to use it.
+    public Node getNode(int index) {
+        return NodeRecord.toNode(records, index * STRIDE, tree, encoding == InputEncoding.UTF16 ? 1 : 0);
+    }
+}
@@ -0,0 +1,27 @@
+package ai.serenade.treesitter;
+
+// Describes a change to the source of a tree, in the coordinates of the source before the change.
+// See `Tree.edit`.
+public class InputEdit {
+    public final int startByte;
+    public final int oldEndByte;
+    public final int newEndByte;
+
+    public final Point startPoint;
+    public final Point oldEndPoint;
+    public final Point newEndPoint;
+
+    public InputEdit(int startByte, int oldEndByte, int newEndByte, Point startPoint, Point oldEndPoint, Point newEndPoint) {
+        this.startByte = startByte;
+        this.oldEndByte = oldEndByte;
+        this.newEndByte = newEndByte;
+        this.startPoint = startPoint;
+        this.oldEndPoint = oldEndPoint;
+        this.newEndPoint = newEndPoint;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%d, %d -> %d]", startByte, oldEndByte, newEndByte);
+    }
+}
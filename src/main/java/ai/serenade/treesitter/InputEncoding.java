@@ -0,0 +1,33 @@
+package ai.serenade.treesitter;
+
+// The encoding a tree was parsed from. It decides the unit of the tree's offsets and columns: bytes for UTF-8, and
+// code units for UTF-16. tree-sitter itself counts UTF-16 in bytes, which the bindings convert.
+public enum InputEncoding {
+    UTF8,
+    UTF16;
+
+    // How many bytes the text takes in this encoding, counted without encoding it. Unpaired surrogates count as
+    // the one '?' that `String.getBytes` puts in their place.
+    public long byteLength(CharSequence text) {
+        if (this == UTF16)
+            return 2L * text.length();
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,125 @@
+package ai.serenade.treesitter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The symbol and field tables of a language, loaded from the native side once and kept as interned strings.
+// Hot code should compare symbol and field ids (see `Node.getSymbol`, `Node.getChildByFieldId`) and only turn
+// them into names here when it needs to.
+public class Language {
+    // Symbols tree-sitter adds to every language, outside of the language's own symbol table.
+    public static final int ERROR_SYMBOL = 0xFFFF;
+    public static final int ERROR_REPEAT_SYMBOL = 0xFFFE;
+
+    // Values of tree-sitter's TSSymbolType.
+    private static final int SYMBOL_TYPE_REGULAR = 0;
+    private static final int SYMBOL_TYPE_ANONYMOUS = 1;
+
+    private static final Map<Long, Language> languages = new ConcurrentHashMap<>();
+
+    private final long pointer;
+    // Known for the languages of `Languages` and those loaded by name, through a `LanguageRegistry`.
+    private volatile String name;
+    private final String[] symbolNames;
+    private final int[] symbolTypes;
+    // Index 0 is unused: field ids start at 1.
+    private final String[] fieldNames;
+    private final Map<String, Integer> namedSymbolIds = new HashMap<>();
+    private final Map<String, Integer> anonymousSymbolIds = new HashMap<>();
+    private final Map<String, Integer> fieldIds = new HashMap<>();
+
+    private Language(long pointer) {
+        this.pointer = pointer;
+        this.name = Languages.nameOf(pointer);
+        int symbolCount = TreeSitter.languageSymbolCount(pointer);
+        symbolNames = new String[symbolCount];
+        symbolTypes = new int[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            symbolNames[i] = TreeSitter.languageSymbolName(pointer, i).intern();
+            symbolTypes[i] = TreeSitter.languageSymbolType(pointer, i);
+            // Several symbols can share a name (e.g. aliases). Like ts_language_symbol_for_name, the first visible
+            // one wins.
+            if (symbolTypes[i] == SYMBOL_TYPE_REGULAR)
+                namedSymbolIds.putIfAbsent(symbolNames[i], i);
+            else if (symbolTypes[i] == SYMBOL_TYPE_ANONYMOUS)
+                anonymousSymbolIds.putIfAbsent(symbolNames[i], i);
+        }
+        namedSymbolIds.put("ERROR", ERROR_SYMBOL);
+
+        int fieldCount = TreeSitter.languageFieldCount(pointer);
+        fieldNames = new String[fieldCount + 1];
+        for (int i = 1; i <= fieldCount; i++) {
+            fieldNames[i] = TreeSitter.languageFieldName(pointer, i).intern();
+            fieldIds.put(fieldNames[i], i);
+        }
+    }
+
+    // Returns the metadata for a language pointer such as `Languages.java()`. It is only loaded the first time.
+    public static Language of(long pointer) {
+        return languages.computeIfAbsent(pointer, Language::new);
+    }
+
+    static Language of(long pointer, String name) {
+        var language = of(pointer);
+        if (language.name == null)
+            language.name = name;
+        return language;
+    }
+
+    // The name the language was loaded by, or its grammar's name for the languages of `Languages`, e.g. "c_sharp".
+    // Null for languages that came from elsewhere.
+    public String getName() {
+        return name;
+    }
+
+    public long getPointer() {
+        return pointer;
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? name : "language@0x" + Long.toHexString(pointer);
+    }
+
+    public int getSymbolCount() {
+        return symbolNames.length;
+    }
+
+    // The interned type name of a symbol, as returned by `Node.getType`.
+    public String getSymbolName(int symbol) {
+        if (symbol == ERROR_SYMBOL)
+            return "ERROR";
+        if (symbol == ERROR_REPEAT_SYMBOL)
+            return "_ERROR";
+        return symbolNames[symbol];
+    }
+
+    public boolean isNamedSymbol(int symbol) {
+        return symbol == ERROR_SYMBOL || (symbol < symbolTypes.length && symbolTypes[symbol] == SYMBOL_TYPE_REGULAR);
+    }
+
+    // Returns the id of the visible symbol with this name, preferring named symbols, or -1 if there is none.
+    public int symbolId(String name) {
+        int id = symbolId(name, true);
+        return id == -1 ? symbolId(name, false) : id;
+    }
+
+    public int symbolId(String name, boolean named) {
+        return (named ? namedSymbolIds : anonymousSymbolIds).getOrDefault(name, -1);
+    }
+
+    public int getFieldCount() {
+        return fieldNames.length - 1;
+    }
+
+    // The interned name of a field, or null for 0 (no field).
+    public String getFieldName(int fieldId) {
+        return fieldNames[fieldId];
+    }
+
+    // Returns the id of the field with this name, or 0 if there is none.
+    public int fieldId(String name) {
+        return fieldIds.getOrDefault(name, 0);
+    }
+}
@@ -0,0 +1,139 @@
+package ai.serenade.treesitter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Finds languages by name or file extension, and loads each grammar from its own shared library the first time
+// it is used, so a process only pays for the grammars it touches. Build the libraries with
+// `./build.py --grammar-only -o <directory> path-to-tree-sitter-python ...`, which names them like
+// libtree-sitter-python.so (or .dylib). Loaded languages, with their metadata, are kept for the life of the process.
+// `getDefault` looks in the directory named by the `ai.serenade.treesitter.grammars` system property or the
+// JAVA_TREE_SITTER_GRAMMARS environment variable.
+public class LanguageRegistry {
+    public static final String DIRECTORY_PROPERTY = "ai.serenade.treesitter.grammars";
+    public static final String DIRECTORY_ENVIRONMENT = "JAVA_TREE_SITTER_GRAMMARS";
+
+    // Extensions of the grammars build.py knows about, keyed by language name.
+    private static final Map<String, List<String>> DEFAULT_EXTENSIONS = Map.ofEntries(
+            Map.entry("bash", List.of("sh", "bash")),
+            Map.entry("c", List.of("c", "h")),
+            Map.entry("c_sharp", List.of("cs")),
+            Map.entry("cpp", List.of("cc", "cpp", "cxx", "hh", "hpp", "hxx")),
+            Map.entry("css", List.of("css")),
+            Map.entry("dart", List.of("dart")),
+            Map.entry("elm", List.of("elm")),
+            Map.entry("go", List.of("go")),
+            Map.entry("html", List.of("html", "htm")),
+            Map.entry("java", List.of("java")),
+            Map.entry("javascript", List.of("js", "mjs", "cjs", "jsx")),
+            Map.entry("json", List.of("json")),
+            Map.entry("kotlin", List.of("kt", "kts")),
+            Map.entry("lua", List.of("lua")),
+            Map.entry("php", List.of("php")),
+            Map.entry("python", List.of("py", "pyi")),
+            Map.entry("ruby", List.of("rb")),
+            Map.entry("rust", List.of("rs")),
+            Map.entry("scala", List.of("scala")),
+            Map.entry("swift", List.of("swift")),
+            Map.entry("toml", List.of("toml")),
+            Map.entry("tsx", List.of("tsx")),
+            Map.entry("typescript", List.of("ts", "mts", "cts")),
+            Map.entry("vue", List.of("vue")),
+            Map.entry("yaml", List.of("yml", "yaml")));
+
+    private static volatile LanguageRegistry defaultRegistry;
+
+    private final Path directory;
+    private final Map<String, Path> libraries = new ConcurrentHashMap<>();
+    private final Map<String, String> extensions = new ConcurrentHashMap<>();
+    private final Map<String, Language> loaded = new ConcurrentHashMap<>();
+
+    // Looks for grammar libraries in `directory`, which may be null if every language is registered explicitly.
+    public LanguageRegistry(Path directory) {
+        this.directory = directory;
+        DEFAULT_EXTENSIONS.forEach((name, names) -> names.forEach(extension -> extensions.put(extension, name)));
+    }
+
+    public static LanguageRegistry getDefault() {
+        if (defaultRegistry == null) {
+            synchronized (LanguageRegistry.class) {
+                if (defaultRegistry == null) {
+                    String directory = System.getProperty(DIRECTORY_PROPERTY, System.getenv(DIRECTORY_ENVIRONMENT));
+                    defaultRegistry = new LanguageRegistry(directory == null ? null : Path.of(directory));
+                }
+            }
+        }
+        return defaultRegistry;
+    }
+
+    // Loads `name` from `library` instead of the registry's directory, and maps the extensions to it.
+    // The library must export tree_sitter_<name>, with dashes in the name replaced by underscores.
+    public void register(String name, Path library, String... extensions) {
+        libraries.put(name, library);
+        for (String extension : extensions)
+            this.extensions.put(extension.toLowerCase(Locale.ROOT), name);
+    }
+
+    // Returns the language, loading its library on first use. Throws if there's no library for it.
+    public Language get(String name) {
+        return loaded.computeIfAbsent(name, this::load);
+    }
+
+    public boolean isLoaded(String name) {
+        return loaded.containsKey(name);
+    }
+
+    // Like `get`, but empty if no library for `name` can be found.
+    public Optional<Language> find(String name) {
+        if (loaded.containsKey(name) || libraryFor(name) != null)
+            return Optional.of(get(name));
+        return Optional.empty();
+    }
+
+    // The language for a file extension without the dot, e.g. "py".
+    public Optional<Language> forExtension(String extension) {
+        var name = extensions.get(extension.toLowerCase(Locale.ROOT));
+        return name == null ? Optional.empty() : find(name);
+    }
+
+    public Optional<Language> forPath(Path path) {
+        var fileName = path.getFileName();
+        if (fileName == null)
+            return Optional.empty();
+        String name = fileName.toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? Optional.empty() : forExtension(name.substring(dot + 1));
+    }
+
+    // The language pointer for a path, or 0 if there's none. Fits `BatchParser.LanguageResolver`.
+    public long resolve(Path path) {
+        return forPath(path).map(Language::getPointer).orElse(0L);
+    }
+
+    private Path libraryFor(String name) {
+        var library = libraries.get(name);
+        if (library != null)
+            return library;
+        if (directory == null)
+            return null;
+        library = directory.resolve(System.mapLibraryName("tree-sitter-" + name.replace('_', '-')));
+        return Files.exists(library) ? library : null;
+    }
+
+    private Language load(String name) {
+        var library = libraryFor(name);
+        if (library == null)
+            throw new IllegalArgumentException("No grammar library found for " + name);
+        var error = new String[1];
+        long pointer = TreeSitter.languageLoad(
+                library.toAbsolutePath().toString(), "tree_sitter_" + name.replace('-', '_'), error);
+        if (pointer == 0)
+            throw new RuntimeException("Couldn't load the " + name + " grammar: " + error[0]);
+        return Language.of(pointer, name);
+    }
+}
@@ -1,6 +1,39 @@
 package ai.serenade.treesitter;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 public class Languages {
+  // The grammar names of the languages below, as in their tree_sitter_<name> symbols, so that they can be reported
+  // by a name that doesn't change from one run to the next. Only loaded the first time a name is needed.
+  private static class Names {
+    static final Map<Long, String> BY_POINTER = load();
+
+    private static Map<Long, String> load() {
+      var names = new HashMap<Long, String>();
+      for (Method method : Languages.class.getDeclaredMethods()) {
+        if (!Modifier.isNative(method.getModifiers()))
+          continue;
+        try {
+          String name = method.getName().replaceAll("([A-Z])", "_$1").toLowerCase(Locale.ROOT);
+          names.put((Long) method.invoke(null), name);
+        } catch (InvocationTargetException e) {
+          // The grammar isn't linked into the library.
+        } catch (IllegalAccessException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return names;
+    }
+  }
+
+  static String nameOf(long pointer) {
+    return Names.BY_POINTER.get(pointer);
+  }
 
   public static native long agda();
 
@@ -0,0 +1,250 @@
+package ai.serenade.treesitter;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Optional instrumentation of the binding: parse latencies per language, bytes parsed, nodes handed to Java in
+// bulk, JNI calls by method, live trees, parsers and cursors, and source generation time.
+// It's off unless the JVM is started with -Dai.serenade.treesitter.metrics=true. The switch is a static final,
+// so when it's off the JIT drops the recording code and the native side only pays a relaxed load per JNI call.
+// When it's on, the metrics are published as a `MetricsMXBean` and can be pulled with `snapshot`.
+public final class Metrics {
+    public static final String ENABLED_PROPERTY = "ai.serenade.treesitter.metrics";
+    public static final String OBJECT_NAME = "ai.serenade.treesitter:type=Metrics";
+
+    static final boolean ENABLED = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    // A lock-free latency histogram with power-of-two buckets: bucket 0 holds everything under
+    // 1 microsecond, bucket i everything in [2^(i-1), 2^i) microseconds, and the last bucket everything longer.
+    public static final class Histogram {
+        static final int BUCKETS = 40;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++)
+                buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos) {
+            long micros = nanos / 1000;
+            int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets[bucket].increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+                counts[i] = buckets[i].sum();
+            return new Snapshot(counts, totalNanos.sum(), maxNanos.get());
+        }
+
+        public record Snapshot(long[] buckets, long totalNanos, long maxNanos) {
+            public long count() {
+                return Arrays.stream(buckets).sum();
+            }
+
+            // The upper bound of the bucket holding the given percentile, in microseconds. Never more than the max.
+            public long percentileMicros(double percentile) {
+                long count = count();
+                if (count == 0)
+                    return 0;
+                long rank = (long) Math.ceil(percentile * count);
+                long seen = 0;
+                for (int i = 0; i < buckets.length; i++) {
+                    seen += buckets[i];
+                    if (seen >= rank)
+                        return Math.min(1L << i, maxNanos / 1000 + 1);
+                }
+                return maxNanos / 1000 + 1;
+            }
+        }
+    }
+
+    public record Snapshot(
+            Map<String, Histogram.Snapshot> parseLatencyByLanguage,
+            long bytesParsed,
+            long nodesProduced,
+            long liveTrees,
+            long liveParsers,
+            long liveCursors,
+            Histogram.Snapshot sourceGeneration,
+            Map<String, Long> jniCalls) {
+        public long parses() {
+            return parseLatencyByLanguage.values().stream().mapToLong(Histogram.Snapshot::count).sum();
+        }
+    }
+
+    // Keyed by name, so languages loaded twice (say the bundled grammar and a registry copy) share one histogram.
+    // The pointer map only saves the name lookup on each parse.
+    private static final Map<String, Histogram> parseLatencies = new ConcurrentHashMap<>();
+    private static final Map<Long, Histogram> parseLatenciesByPointer = new ConcurrentHashMap<>();
+    private static final LongAdder bytesParsed = new LongAdder();
+    private static final LongAdder nodesProduced = new LongAdder();
+    private static final LongAdder liveTrees = new LongAdder();
+    private static final LongAdder liveParsers = new LongAdder();
+    private static final LongAdder liveCursors = new LongAdder();
+    private static final Histogram sourceGeneration = new Histogram();
+
+    static {
+        if (ENABLED) {
+            TreeSitter.metricsSetEnabled(true);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                throw new RuntimeException("Couldn't register the tree-sitter metrics MBean", e);
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    static void recordParse(long language, long bytes, long nanos) {
+        parseLatenciesByPointer.computeIfAbsent(language,
+                key -> parseLatencies.computeIfAbsent(languageName(key), name -> new Histogram())).record(nanos);
+        bytesParsed.add(bytes);
+    }
+
+    static void recordNodesProduced(int count) {
+        nodesProduced.add(count);
+    }
+
+    static void treeOpened() {
+        liveTrees.increment();
+    }
+
+    static void treeClosed() {
+        liveTrees.decrement();
+    }
+
+    static void parserOpened() {
+        liveParsers.increment();
+    }
+
+    static void parserClosed() {
+        liveParsers.decrement();
+    }
+
+    static void cursorOpened() {
+        liveCursors.increment();
+    }
+
+    static void cursorClosed() {
+        liveCursors.decrement();
+    }
+
+    // Public so that the source generator can report, which lives outside this package.
+    public static void recordSourceGeneration(long nanos) {
+        if (ENABLED)
+            sourceGeneration.record(nanos);
+    }
+
+    static String languageName(long language) {
+        return Language.of(language).toString();
+    }
+
+    public static Snapshot snapshot() {
+        var latencies = new TreeMap<String, Histogram.Snapshot>();
+        parseLatencies.forEach((language, histogram) -> latencies.put(language, histogram.snapshot()));
+        return new Snapshot(
+                latencies,
+                bytesParsed.sum(),
+                nodesProduced.sum(),
+                liveTrees.sum(),
+                liveParsers.sum(),
+                liveCursors.sum(),
+                sourceGeneration.snapshot(),
+                jniCalls());
+    }
+
+    private static Map<String, Long> jniCalls() {
+        var calls = new TreeMap<String, Long>();
+        if (!ENABLED)
+            return calls;
+        int count = TreeSitter.metricsJniCallCount();
+        for (int i = 0; i < count; i++) {
+            String name = TreeSitter.metricsJniCallName(i);
+            if (name != null)
+                calls.merge(name, TreeSitter.metricsJniCallValue(i), Long::sum);
+        }
+        return calls;
+    }
+
+    private static final class Bean implements MetricsMXBean {
+        private static Map<String, Long> parseLatencies(ToLongFunction<Histogram.Snapshot> metric) {
+            var values = new TreeMap<String, Long>();
+            snapshot().parseLatencyByLanguage().forEach((language, histogram) ->
+                    values.put(language, metric.applyAsLong(histogram)));
+            return values;
+        }
+
+        public long getParses() {
+            return snapshot().parses();
+        }
+
+        public long getBytesParsed() {
+            return bytesParsed.sum();
+        }
+
+        public long getNodesProduced() {
+            return nodesProduced.sum();
+        }
+
+        public long getLiveTrees() {
+            return liveTrees.sum();
+        }
+
+        public long getLiveParsers() {
+            return liveParsers.sum();
+        }
+
+        public long getLiveCursors() {
+            return liveCursors.sum();
+        }
+
+        public Map<String, Long> getParsesByLanguage() {
+            return parseLatencies(Histogram.Snapshot::count);
+        }
+
+        public Map<String, Long> getParseLatencyP50Micros() {
+            return parseLatencies(histogram -> histogram.percentileMicros(0.5));
+        }
+
+        public Map<String, Long> getParseLatencyP99Micros() {
+            return parseLatencies(histogram -> histogram.percentileMicros(0.99));
+        }
+
+        public Map<String, Long> getParseLatencyMaxMicros() {
+            return parseLatencies(histogram -> histogram.maxNanos() / 1000);
+        }
+
+        public long getSourceGenerations() {
+            return sourceGeneration.snapshot().count();
+        }
+
+        public long getSourceGenerationP99Micros() {
+            return sourceGeneration.snapshot().percentileMicros(0.99);
+        }
+
+        public Map<String, Long> getJniCalls() {
+            return jniCalls();
+        }
+    }
+}
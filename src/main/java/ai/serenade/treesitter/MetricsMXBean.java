@@ -0,0 +1,33 @@
+package ai.serenade.treesitter;
+
+import java.util.Map;
+
+// What `Metrics` publishes over JMX, as "ai.serenade.treesitter:type=Metrics". Latencies are in microseconds and
+// maps of languages are keyed by language name.
+public interface MetricsMXBean {
+    long getParses();
+
+    long getBytesParsed();
+
+    long getNodesProduced();
+
+    long getLiveTrees();
+
+    long getLiveParsers();
+
+    long getLiveCursors();
+
+    Map<String, Long> getParsesByLanguage();
+
+    Map<String, Long> getParseLatencyP50Micros();
+
+    Map<String, Long> getParseLatencyP99Micros();
+
+    Map<String, Long> getParseLatencyMaxMicros();
+
+    long getSourceGenerations();
+
+    long getSourceGenerationP99Micros();
+
+    Map<String, Long> getJniCalls();
+}
@@ -7,10 +7,36 @@ public class Node {
     private int context3;
     private long id;
     private long tree;
+    // 1 for the nodes of a UTF-16 tree. tree-sitter counts their offsets and columns in bytes, and the natives
+    // convert them to and from code units with this shift.
+    private int offsetShift;
 
     public Node() {
     }
 
+    Node(int context0, int context1, int context2, int context3, long id, long tree, int offsetShift) {
+        this.context0 = context0;
+        this.context1 = context1;
+        this.context2 = context2;
+        this.context3 = context3;
+        this.id = id;
+        this.tree = tree;
+        this.offsetShift = offsetShift;
+    }
+
+    long getTree() {
+        return tree;
+    }
+
+    int getOffsetShift() {
+        return offsetShift;
+    }
+
+    // tree-sitter's id for this node, unique among the nodes of a tree. Nodes from copies of a tree share ids.
+    public long getId() {
+        return id;
+    }
+
     public Node getChild(int child) {
         return TreeSitter.nodeChild(this, child);
     }
@@ -74,8 +100,47 @@ public class Node {
         return TreeSitter.nodeGetChildByFieldName(this, fieldName);
     }
 
+    // The interned type name, from the language's symbol table rather than a new string per call.
     public String getType() {
-        return TreeSitter.nodeType(this);
+        return Language.of(TreeSitter.treeLanguage(tree)).getSymbolName(getSymbol());
+    }
+
+    // The symbol id of this node's type. See `Language` to map it to and from names.
+    public int getSymbol() {
+        return TreeSitter.nodeSymbol(this);
+    }
+
+    // Like `getChildByFieldName`, with an id from `Language.fieldId`.
+    public Node getChildByFieldId(int fieldId) {
+        return TreeSitter.nodeGetChildByFieldId(this, fieldId);
+    }
+
+    // The smallest node within this one that spans the given byte range. Offsets are in the same units as
+    // `getStartByte`. The result is this node itself if no descendant spans the range.
+    public Node getDescendantForByteRange(int startByte, int endByte) {
+        return TreeSitter.nodeDescendantForByteRange(this, startByte, endByte, false);
+    }
+
+    public Node getNamedDescendantForByteRange(int startByte, int endByte) {
+        return TreeSitter.nodeDescendantForByteRange(this, startByte, endByte, true);
+    }
+
+    // Like `getDescendantForByteRange`, with rows and columns as in `getRange`.
+    public Node getDescendantForPointRange(Point start, Point end) {
+        return TreeSitter.nodeDescendantForPointRange(this, start.row, start.column, end.row, end.column, false);
+    }
+
+    public Node getNamedDescendantForPointRange(Point start, Point end) {
+        return TreeSitter.nodeDescendantForPointRange(this, start.row, start.column, end.row, end.column, true);
+    }
+
+    // The first child that ends after the given byte, or a null node if there is none.
+    public Node getFirstChildForByte(int byteOffset) {
+        return TreeSitter.nodeFirstChildForByte(this, byteOffset, false);
+    }
+
+    public Node getFirstNamedChildForByte(int byteOffset) {
+        return TreeSitter.nodeFirstChildForByte(this, byteOffset, true);
     }
 
     public boolean isNull() {
@@ -87,6 +152,15 @@ public class Node {
     }
 
     public TreeCursor walk() {
-        return new TreeCursor(TreeSitter.treeCursorNew(this));
+        return new TreeCursor(TreeSitter.treeCursorNew(this), offsetShift, Language.of(TreeSitter.treeLanguage(tree)));
+    }
+
+    // Walks this node and all of its descendants in the given order. See `TreeWalker`.
+    public TreeWalker walker(TreeWalker.Order order) {
+        return new TreeWalker(this, order, TreeWalker.DEFAULT_BATCH_SIZE);
+    }
+
+    public TreeWalker walker() {
+        return walker(TreeWalker.Order.PREORDER);
     }
 }
@@ -0,0 +1,59 @@
+package ai.serenade.treesitter;
+
+// Layout of the packed node records that the native side writes into int arrays. Every bulk native call
+// (tree export, batched walks, query captures) starts its records with this block, so that nodes can be read
+// and turned back into `Node` handles without crossing JNI again.
+// Keep in sync with the NODE_RECORD_* constants in lib/ai_serenade_treesitter_TreeSitter.cc.
+final class NodeRecord {
+    static final int SYMBOL = 0;
+    static final int FLAGS = 1;
+    static final int START_BYTE = 2;
+    static final int END_BYTE = 3;
+    static final int START_ROW = 4;
+    static final int START_COL = 5;
+    static final int END_ROW = 6;
+    static final int END_COL = 7;
+    static final int CONTEXT0 = 8;
+    static final int CONTEXT1 = 9;
+    static final int CONTEXT2 = 10;
+    static final int CONTEXT3 = 11;
+    static final int ID_LOW = 12;
+    static final int ID_HIGH = 13;
+
+    // Number of ints taken by the node block. Callers append their own columns after it.
+    static final int SIZE = 14;
+
+    static final int FLAG_NAMED = 1;
+    static final int FLAG_HAS_ERROR = 1 << 1;
+    static final int FLAG_MISSING = 1 << 2;
+    static final int FLAG_EXTRA = 1 << 3;
+
+    private NodeRecord() {
+    }
+
+    static boolean hasFlag(int[] records, int offset, int flag) {
+        return (records[offset + FLAGS] & flag) != 0;
+    }
+
+    static Range toRange(int[] records, int offset) {
+        return new Range(
+                records[offset + START_ROW],
+                records[offset + START_COL],
+                records[offset + END_ROW],
+                records[offset + END_COL]
+        );
+    }
+
+    static Node toNode(int[] records, int offset, long tree, int offsetShift) {
+        long id = (records[offset + ID_HIGH] & 0xffffffffL) << 32 | (records[offset + ID_LOW] & 0xffffffffL);
+        return new Node(
+                records[offset + CONTEXT0],
+                records[offset + CONTEXT1],
+                records[offset + CONTEXT2],
+                records[offset + CONTEXT3],
+                id,
+                tree,
+                offsetShift
+        );
+    }
+}
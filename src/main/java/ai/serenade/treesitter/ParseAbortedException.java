@@ -0,0 +1,24 @@
+package ai.serenade.treesitter;
+
+// Thrown by `Parser` when a parse stops before finishing, because it ran out of time or was cancelled.
+// The parser keeps the unfinished parse: calling the same parse method again with the same source (and, after a
+// cancellation, a cleared flag) resumes where it stopped. Call `Parser.reset` instead to throw it away.
+public class ParseAbortedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        TIMED_OUT,
+        CANCELLED
+    }
+
+    private final Reason reason;
+
+    public ParseAbortedException(Reason reason) {
+        super(reason == Reason.TIMED_OUT ? "The parse timed out" : "The parse was cancelled");
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
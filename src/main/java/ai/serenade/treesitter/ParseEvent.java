@@ -0,0 +1,38 @@
+package ai.serenade.treesitter;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+// Only slow parses are recorded by default, since filling in the node count walks the whole tree again. Lower the
+// threshold in the recording settings to see every parse.
+@Name("ai.serenade.treesitter.Parse")
+@Label("Parse")
+@Category("Tree-sitter")
+@Description("Parsing a source into a tree")
+@Threshold("10 ms")
+final class ParseEvent extends Event {
+    @Label("Language")
+    String language;
+
+    @Label("Input Size")
+    @DataAmount
+    long inputSize;
+
+    @Label("Node Count")
+    int nodeCount;
+
+    @Label("Has Errors")
+    boolean hasErrors;
+
+    @Label("Source")
+    @Description("The file that was parsed, if it came from one")
+    String source;
+
+    // Start time for `Metrics`. Transient fields aren't recorded.
+    transient long startNanos;
+}
@@ -1,13 +1,63 @@
 package ai.serenade.treesitter;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class Parser implements AutoCloseable {
+  // Size of the buffer that streamed sources are handed to tree-sitter in.
+  public static final int CHUNK_SIZE = 64 * 1024;
+  // How much of a stream that can't seek is kept around for tree-sitter to read again.
+  public static final int STREAM_WINDOW_SIZE = 4 * CHUNK_SIZE;
+  // Files up to this size are read rather than memory-mapped by `parse(Path)`.
+  public static final int MAP_THRESHOLD = 1024 * 1024;
+
+  // Called back from the native side while parsing a `SourceReader`.
+  static class ChunkInput {
+    private final SourceReader reader;
+    private final ByteBuffer chunk;
+    private IOException error;
+    private long bytesRead;
+
+    ChunkInput(SourceReader reader, ByteBuffer chunk) {
+      this.reader = reader;
+      this.chunk = chunk;
+    }
+
+    // Fills the chunk with the source at `byteOffset` and returns how many bytes it holds.
+    int read(int byteOffset) {
+      chunk.clear();
+      try {
+        int read = reader.read(Integer.toUnsignedLong(byteOffset), chunk);
+        bytesRead += Math.max(0, read);
+        return read;
+      } catch (IOException e) {
+        error = e;
+        return 0;
+      }
+    }
+  }
+
   private long pointer;
+  private long language;
+  private CancellationFlag cancellationFlag;
+  // Allocated on first use and reused by every streamed parse, like the parser itself.
+  private ByteBuffer chunk;
+  // Same for the files that `parse(Path)` reads. It grows up to `MAP_THRESHOLD`.
+  private ByteBuffer fileBuffer;
 
   Parser(long pointer) {
     this.pointer = pointer;
+    if (Metrics.ENABLED)
+      Metrics.parserOpened();
   }
 
   public Parser() {
@@ -16,15 +66,194 @@ public class Parser implements AutoCloseable {
 
   public void setLanguage(long language) {
     TreeSitter.parserSetLanguage(pointer, language);
+    this.language = language;
+  }
+
+  long getLanguage() {
+    return language;
+  }
+
+  // Makes every parse give up with a `ParseAbortedException` after this many microseconds. 0, the default,
+  // means no limit. The limit applies to each call, so a resumed parse gets the full time again.
+  public void setTimeoutMicros(long timeoutMicros) {
+    if (timeoutMicros < 0)
+      throw new IllegalArgumentException("The timeout must not be negative");
+    TreeSitter.parserSetTimeoutMicros(pointer, timeoutMicros);
+  }
+
+  public long getTimeoutMicros() {
+    return TreeSitter.parserTimeoutMicros(pointer);
+  }
+
+  // Makes parses stop with a `ParseAbortedException` once `flag` is cancelled, or removes the flag if it is null.
+  // The flag isn't owned by the parser and must outlive its use here.
+  public void setCancellationFlag(CancellationFlag flag) {
+    TreeSitter.parserSetCancellationFlag(pointer, flag == null ? 0 : flag.getPointer());
+    cancellationFlag = flag;
+  }
+
+  public CancellationFlag getCancellationFlag() {
+    return cancellationFlag;
   }
 
   public Tree parseString(String source) throws UnsupportedEncodingException {
+    var event = startParse();
+    byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+    return parsed(TreeSitter.parserParseBytesUTF8(pointer, bytes, bytes.length), InputEncoding.UTF8, bytes.length, event);
+  }
+
+  // Parses `source` reusing the unchanged parts of `oldTree`. Every change made to the source since `oldTree`
+  // was parsed must have been recorded on it with `Tree.edit` first. `oldTree` stays valid and is still owned by
+  // the caller.
+  public Tree parseString(Tree oldTree, String source) throws UnsupportedEncodingException {
+    var event = startParse();
     byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
-    return new Tree(TreeSitter.parserParseBytesUTF8(pointer, bytes, bytes.length));
+    long tree = TreeSitter.parserIncrementalParseBytesUTF8(
+        pointer, oldTreePointer(oldTree, InputEncoding.UTF8), bytes, bytes.length);
+    return parsed(tree, InputEncoding.UTF8, bytes.length, event);
+  }
+
+  // Parses the string as UTF-16, straight from its characters, without encoding it to UTF-8 first. Offsets and
+  // columns of the returned tree are in UTF-16 code units everywhere (nodes, exports, walkers, queries and edits),
+  // so they can be used as string indices directly.
+  // The string is pinned while it is parsed, which holds off the garbage collector for the duration of the parse.
+  public Tree parseUtf16(String source) {
+    return parseUtf16(null, source);
+  }
+
+  public Tree parseUtf16(Tree oldTree, String source) {
+    var event = startParse();
+    long tree = TreeSitter.parserParseStringUTF16(pointer, oldTreePointer(oldTree, InputEncoding.UTF16), source);
+    return parsed(tree, InputEncoding.UTF16, 2L * source.length(), event);
+  }
+
+  private static long oldTreePointer(Tree oldTree, InputEncoding encoding) {
+    if (oldTree == null)
+      return 0;
+    if (oldTree.getEncoding() != encoding)
+      throw new IllegalArgumentException("The old tree was parsed from " + oldTree.getEncoding() + ", not " + encoding);
+    return oldTree.getPointer();
+  }
+
+  // Parses the UTF-8 source between the position and the limit of a direct buffer. tree-sitter reads straight
+  // from the buffer's memory, so nothing is copied. The buffer's position is left untouched.
+  public Tree parse(ByteBuffer source) {
+    return parse(null, source);
+  }
+
+  public Tree parse(Tree oldTree, ByteBuffer source) {
+    if (!source.isDirect())
+      throw new IllegalArgumentException("Only direct buffers can be parsed without copying them.");
+    return parseDirect(oldTree, source, startParse());
+  }
+
+  private Tree parseDirect(Tree oldTree, ByteBuffer source, ParseEvent event) {
+    long tree = TreeSitter.parserParseDirectBuffer(
+        pointer, oldTreePointer(oldTree, InputEncoding.UTF8), source, source.position(), source.remaining());
+    return parsed(tree, InputEncoding.UTF8, source.remaining(), event);
+  }
+
+  // Parses a UTF-8 file without reading it onto the heap. Files up to `MAP_THRESHOLD` are read into a direct buffer
+  // that the parser keeps for the next one, so parsing many small files doesn't create a mapping per file: those are
+  // only released by the garbage collector, and a process only gets so many. Bigger files are memory-mapped and
+  // parsed in place, and must not be truncated while that runs.
+  public Tree parse(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE)
+        throw new IOException("File is too large to parse: " + path);
+      var event = startParse();
+      event.source = path.toString();
+      if (size > MAP_THRESHOLD)
+        return parseDirect(null, channel.map(FileChannel.MapMode.READ_ONLY, 0, size), event);
+      var source = read(channel, (int) size);
+      if (!source.hasRemaining())
+        return parsed(TreeSitter.parserParseBytesUTF8(pointer, new byte[0], 0), InputEncoding.UTF8, 0, event);
+      return parseDirect(null, source, event);
+    }
+  }
+
+  // Reads up to `size` bytes of the file into `fileBuffer`. Fewer if the file was truncated meanwhile.
+  private ByteBuffer read(FileChannel channel, int size) throws IOException {
+    if (fileBuffer == null || fileBuffer.capacity() < size)
+      fileBuffer = ByteBuffer.allocateDirect(Math.max(size, CHUNK_SIZE));
+    fileBuffer.clear().limit(size);
+    while (fileBuffer.hasRemaining() && channel.read(fileBuffer) >= 0) {
+    }
+    return fileBuffer.flip();
+  }
+
+  // Parses a source that is read in chunks of `CHUNK_SIZE` bytes, so that at most one chunk of it is in memory
+  // on our side at any time.
+  public Tree parse(SourceReader reader) throws IOException {
+    return parse(null, reader);
+  }
+
+  public Tree parse(Tree oldTree, SourceReader reader) throws IOException {
+    if (chunk == null)
+      chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    var event = startParse();
+    var input = new ChunkInput(reader, chunk);
+    long tree = TreeSitter.parserParseInput(pointer, oldTreePointer(oldTree, InputEncoding.UTF8), input, chunk);
+    if (input.error != null) {
+      if (tree != 0)
+        TreeSitter.treeDelete(tree);
+      throw input.error;
+    }
+    return parsed(tree, InputEncoding.UTF8, input.bytesRead, event);
+  }
+
+  // Parses a UTF-8 source from a channel. Channels that can't seek are read once, front to back.
+  public Tree parse(ReadableByteChannel channel) throws IOException {
+    if (channel instanceof SeekableByteChannel seekable)
+      return parse(SourceReader.of(seekable));
+    return parse(new StreamSourceReader(channel, STREAM_WINDOW_SIZE));
+  }
+
+  public Tree parse(InputStream stream) throws IOException {
+    return parse(Channels.newChannel(stream));
+  }
+
+  private static ParseEvent startParse() {
+    var event = new ParseEvent();
+    event.begin();
+    if (Metrics.ENABLED)
+      event.startNanos = System.nanoTime();
+    return event;
+  }
+
+  // Wraps a tree that was just parsed, and reports the parse to `Metrics` and JFR when they are enabled.
+  // tree-sitter returns no tree when the parse was aborted, or when there is no language to parse with.
+  private Tree parsed(long tree, InputEncoding encoding, long bytes, ParseEvent event) {
+    event.end();
+    if (tree == 0) {
+      if (language == 0)
+        throw new IllegalStateException("The parser has no language set.");
+      if (cancellationFlag != null && cancellationFlag.isCancelled())
+        throw new ParseAbortedException(ParseAbortedException.Reason.CANCELLED);
+      throw new ParseAbortedException(ParseAbortedException.Reason.TIMED_OUT);
+    }
+    if (Metrics.ENABLED)
+      Metrics.recordParse(TreeSitter.treeLanguage(tree), bytes, System.nanoTime() - event.startNanos);
+    if (event.shouldCommit()) {
+      event.language = Language.of(TreeSitter.treeLanguage(tree)).toString();
+      event.inputSize = bytes;
+      event.nodeCount = TreeSitter.treeNodeCount(tree);
+      event.hasErrors = TreeSitter.nodeHasError(TreeSitter.treeRootNode(tree, 0));
+      event.commit();
+    }
+    return new Tree(tree, encoding);
+  }
+
+  // Throws away the state of an unfinished parse, so that the next parse starts from scratch.
+  public void reset() {
+    TreeSitter.parserReset(pointer);
   }
 
   @Override
   public void close() {
     TreeSitter.parserDelete(pointer);
+    if (Metrics.ENABLED)
+      Metrics.parserClosed();
   }
 }
@@ -0,0 +1,189 @@
+package ai.serenade.treesitter;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hands out `Parser`s that already have their language set, so that worker threads don't create and configure a
+// native parser per file. A `Parser` is not thread-safe, but a leased one belongs to a single thread until the
+// lease is closed.
+// The pool doesn't block or use monitors, so it can be used from virtual threads without pinning them. Idle
+// parsers are kept per language, most recently used first; the ones that stayed idle for too long are closed
+// by `evictIdle`, which the pool also runs on its own from time to time when parsers are returned.
+public class ParserPool implements AutoCloseable {
+    public static final int DEFAULT_MAX_IDLE_PER_LANGUAGE = Runtime.getRuntime().availableProcessors();
+    public static final Duration DEFAULT_MAX_IDLE_TIME = Duration.ofMinutes(1);
+
+    public record Stats(long leases, long returns, long created, long evicted, int leased, int idle) {
+    }
+
+    private record IdleParser(Parser parser, long idleSince) {
+    }
+
+    private static class LanguagePool {
+        final ConcurrentLinkedDeque<IdleParser> parsers = new ConcurrentLinkedDeque<>();
+        final AtomicInteger size = new AtomicInteger();
+    }
+
+    public static final class Lease implements AutoCloseable {
+        private final ParserPool pool;
+        private final long language;
+        private Parser parser;
+
+        private Lease(ParserPool pool, long language, Parser parser) {
+            this.pool = pool;
+            this.language = language;
+            this.parser = parser;
+        }
+
+        public Parser parser() {
+            if (parser == null)
+                throw new IllegalStateException("This lease was already returned.");
+            return parser;
+        }
+
+        public long language() {
+            return language;
+        }
+
+        // Returns the parser to the pool. Closing a lease twice does nothing.
+        @Override
+        public void close() {
+            if (parser == null)
+                return;
+            var returned = parser;
+            parser = null;
+            pool.release(returned);
+        }
+    }
+
+    private final int maxIdlePerLanguage;
+    private final long maxIdleNanos;
+    private final Map<Long, LanguagePool> pools = new ConcurrentHashMap<>();
+
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder returns = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final AtomicInteger leased = new AtomicInteger();
+    private volatile long lastEviction = System.nanoTime();
+    private volatile boolean closed;
+
+    public ParserPool(int maxIdlePerLanguage, Duration maxIdleTime) {
+        if (maxIdlePerLanguage < 0)
+            throw new IllegalArgumentException("maxIdlePerLanguage must not be negative");
+        this.maxIdlePerLanguage = maxIdlePerLanguage;
+        this.maxIdleNanos = maxIdleTime.toNanos();
+    }
+
+    public ParserPool() {
+        this(DEFAULT_MAX_IDLE_PER_LANGUAGE, DEFAULT_MAX_IDLE_TIME);
+    }
+
+    private LanguagePool poolFor(long language) {
+        return pools.computeIfAbsent(language, key -> new LanguagePool());
+    }
+
+    // Leases a parser for `language` (e.g. `Languages.java()`), reusing an idle one when there is one.
+    public Lease lease(long language) {
+        if (closed)
+            throw new IllegalStateException("This pool is closed.");
+        var pool = poolFor(language);
+        var idle = pool.parsers.pollFirst();
+        Parser parser;
+        if (idle != null) {
+            pool.size.decrementAndGet();
+            parser = idle.parser();
+        } else {
+            parser = new Parser();
+            parser.setLanguage(language);
+            created.increment();
+        }
+        leases.increment();
+        leased.incrementAndGet();
+        return new Lease(this, language, parser);
+    }
+
+    private void release(Parser parser) {
+        returns.increment();
+        leased.decrementAndGet();
+        // Drop whatever state a failed or aborted parse may have left behind, and the caller's limits.
+        parser.reset();
+        parser.setTimeoutMicros(0);
+        parser.setCancellationFlag(null);
+
+        // Filed under the language it has now, in case the caller switched it while the parser was leased.
+        long language = parser.getLanguage();
+        if (language == 0) {
+            parser.close();
+            evicted.increment();
+            return;
+        }
+        var pool = poolFor(language);
+        if (closed || pool.size.incrementAndGet() > maxIdlePerLanguage) {
+            pool.size.decrementAndGet();
+            parser.close();
+            evicted.increment();
+        } else {
+            pool.parsers.offerFirst(new IdleParser(parser, System.nanoTime()));
+            // Pools are also closed concurrently, so make sure we didn't just hand a parser to a closed pool.
+            if (closed)
+                closeIdle();
+        }
+
+        long now = System.nanoTime();
+        if (now - lastEviction > maxIdleNanos / 2) {
+            lastEviction = now;
+            evictIdle();
+        }
+    }
+
+    // Closes the parsers that have been idle for longer than the maximum idle time. Returns how many were closed.
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int count = 0;
+        for (var pool : pools.values()) {
+            // The oldest parsers are at the end of the deque.
+            IdleParser idle;
+            while ((idle = pool.parsers.pollLast()) != null) {
+                if (now - idle.idleSince() < maxIdleNanos) {
+                    pool.parsers.offerLast(idle);
+                    break;
+                }
+                pool.size.decrementAndGet();
+                idle.parser().close();
+                count++;
+            }
+        }
+        evicted.add(count);
+        return count;
+    }
+
+    private void closeIdle() {
+        for (var pool : pools.values()) {
+            IdleParser idle;
+            while ((idle = pool.parsers.pollFirst()) != null) {
+                pool.size.decrementAndGet();
+                idle.parser().close();
+                evicted.increment();
+            }
+        }
+    }
+
+    public Stats getStats() {
+        int idle = 0;
+        for (var pool : pools.values())
+            idle += pool.size.get();
+        return new Stats(leases.sum(), returns.sum(), created.sum(), evicted.sum(), leased.get(), idle);
+    }
+
+    // Closes every idle parser. Parsers that are still leased are closed when they are returned.
+    @Override
+    public void close() {
+        closed = true;
+        closeIdle();
+    }
+}
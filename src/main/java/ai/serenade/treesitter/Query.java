@@ -0,0 +1,92 @@
+package ai.serenade.treesitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A compiled tree-sitter query. A compiled query is never modified, so one instance can be used by any number
+// of `QueryCursor`s on any number of threads at the same time.
+// Note that predicates such as `#eq?` and `#match?` are not evaluated by tree-sitter itself; they are accepted
+// but every match is returned regardless.
+public class Query implements AutoCloseable {
+    private record CacheKey(long language, String source) {
+    }
+
+    private static final Map<CacheKey, Query> cache = new ConcurrentHashMap<>();
+
+    private final long pointer;
+    private final String source;
+    private final String[] captureNames;
+    private final int patternCount;
+    private final boolean cached;
+
+    private Query(long language, String source, boolean cached) {
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        int[] error = new int[2];
+        long pointer = TreeSitter.queryNew(language, bytes, bytes.length, error);
+        if (pointer == 0)
+            throw new QueryException(error[0], error[1]);
+        this.pointer = pointer;
+        this.source = source;
+        this.cached = cached;
+        this.patternCount = TreeSitter.queryPatternCount(pointer);
+        this.captureNames = new String[TreeSitter.queryCaptureCount(pointer)];
+        for (int i = 0; i < captureNames.length; i++)
+            captureNames[i] = TreeSitter.queryCaptureName(pointer, i);
+    }
+
+    // Compiles a query that is owned by the caller and has to be closed.
+    public Query(long language, String source) {
+        this(language, source, false);
+    }
+
+    // Returns the compiled query for this language and source, compiling it only the first time it is asked for.
+    // Cached queries are shared, so closing them does nothing; they live until `clearCache` is called.
+    public static Query compile(long language, String source) {
+        return cache.computeIfAbsent(new CacheKey(language, source), key -> new Query(key.language(), key.source(), true));
+    }
+
+    // Deletes every cached query. Cursors that are still running one of them must be closed first.
+    public static void clearCache() {
+        for (var key : cache.keySet()) {
+            var query = cache.remove(key);
+            if (query != null)
+                TreeSitter.queryDelete(query.pointer);
+        }
+    }
+
+    long getPointer() {
+        return pointer;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    public int getCaptureCount() {
+        return captureNames.length;
+    }
+
+    public String getCaptureName(int captureIndex) {
+        return captureNames[captureIndex];
+    }
+
+    // Returns the index of the capture called `name` (without the leading `@`), or -1 if there is none.
+    public int getCaptureIndex(String name) {
+        for (int i = 0; i < captureNames.length; i++) {
+            if (captureNames[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        if (!cached)
+            TreeSitter.queryDelete(pointer);
+    }
+}
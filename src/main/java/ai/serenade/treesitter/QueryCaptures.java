@@ -0,0 +1,95 @@
+package ai.serenade.treesitter;
+
+// A reusable batch of query captures filled by `QueryCursor`. Each capture is a packed int record, so reading a
+// batch doesn't allocate and doesn't cross JNI. Captures that belong to the same match share a match id.
+public class QueryCaptures {
+    static final int MATCH_ID = NodeRecord.SIZE;
+    static final int PATTERN_INDEX = NodeRecord.SIZE + 1;
+    static final int CAPTURE_INDEX = NodeRecord.SIZE + 2;
+    static final int STRIDE = NodeRecord.SIZE + 3;
+
+    private int[] records;
+    private int size;
+    private long tree;
+    private int offsetShift;
+
+    public QueryCaptures(int capacity) {
+        this.records = new int[Math.max(1, capacity) * STRIDE];
+    }
+
+    public QueryCaptures() {
+        this(256);
+    }
+
+    int[] records() {
+        return records;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (records.length < capacity * STRIDE)
+            records = new int[capacity * STRIDE];
+    }
+
+    void fill(int size, long tree, int offsetShift) {
+        this.size = size;
+        this.tree = tree;
+        this.offsetShift = offsetShift;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getMatchId(int index) {
+        return records[index * STRIDE + MATCH_ID];
+    }
+
+    public int getPatternIndex(int index) {
+        return records[index * STRIDE + PATTERN_INDEX];
+    }
+
+    // Index into the capture names of the query, see `Query.getCaptureName`.
+    public int getCaptureIndex(int index) {
+        return records[index * STRIDE + CAPTURE_INDEX];
+    }
+
+    public int getSymbol(int index) {
+        return records[index * STRIDE + NodeRecord.SYMBOL];
+    }
+
+    public int getStartByte(int index) {
+        return records[index * STRIDE + NodeRecord.START_BYTE];
+    }
+
+    public int getEndByte(int index) {
+        return records[index * STRIDE + NodeRecord.END_BYTE];
+    }
+
+    public int getStartRow(int index) {
+        return records[index * STRIDE + NodeRecord.START_ROW];
+    }
+
+    public int getStartColumn(int index) {
+        return records[index * STRIDE + NodeRecord.START_COL];
+    }
+
+    public int getEndRow(int index) {
+        return records[index * STRIDE + NodeRecord.END_ROW];
+    }
+
+    public int getEndColumn(int index) {
+        return records[index * STRIDE + NodeRecord.END_COL];
+    }
+
+    public Range getRange(int index) {
+        return NodeRecord.toRange(records, index * STRIDE);
+    }
+
+    public Node getNode(int index) {
+        return NodeRecord.toNode(records, index * STRIDE, tree, offsetShift);
+    }
+}
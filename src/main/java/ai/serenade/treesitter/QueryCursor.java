@@ -0,0 +1,62 @@
+package ai.serenade.treesitter;
+
+// Runs a `Query` over a node and streams the results out in batches. A cursor holds the state of one execution
+// and must only be used by one thread at a time.
+public class QueryCursor implements AutoCloseable {
+    private final long pointer;
+    private Query query;
+    private long tree;
+    private int offsetShift;
+
+    public QueryCursor() {
+        this.pointer = TreeSitter.queryCursorNew();
+    }
+
+    public void exec(Query query, Node node) {
+        this.query = query;
+        this.tree = node.getTree();
+        this.offsetShift = node.getOffsetShift();
+        TreeSitter.queryCursorExec(pointer, query.getPointer(), node);
+    }
+
+    // Only report matches that intersect this byte range, in the units of the node's offsets. Must be called before
+    // `exec`.
+    public void setByteRange(int startByte, int endByte) {
+        TreeSitter.queryCursorSetByteRange(pointer, startByte, endByte);
+    }
+
+    // Only report matches that intersect this range. Must be called before `exec`.
+    public void setPointRange(Point start, Point end) {
+        TreeSitter.queryCursorSetPointRange(pointer, start.row, start.column, end.row, end.column);
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    // Fills `captures` with the captures of as many whole matches as fit, in the order the matches finish.
+    // Returns false once the query is exhausted.
+    public boolean nextMatches(QueryCaptures captures) {
+        int count = TreeSitter.queryCursorNextMatches(pointer, captures.records());
+        if (count < 0) {
+            // The next match alone doesn't fit in the batch. It is kept on the native side, so grow and retry.
+            captures.ensureCapacity(-count);
+            count = TreeSitter.queryCursorNextMatches(pointer, captures.records());
+        }
+        captures.fill(count, tree, offsetShift);
+        return count > 0;
+    }
+
+    // Fills `captures` with the next captures in the order they appear in the source.
+    // Returns false once the query is exhausted.
+    public boolean nextCaptures(QueryCaptures captures) {
+        int count = TreeSitter.queryCursorNextCaptures(pointer, captures.records());
+        captures.fill(count, tree, offsetShift);
+        return count > 0;
+    }
+
+    @Override
+    public void close() {
+        TreeSitter.queryCursorDelete(pointer);
+    }
+}
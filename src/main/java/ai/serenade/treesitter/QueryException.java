@@ -0,0 +1,31 @@
+package ai.serenade.treesitter;
+
+public class QueryException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    // Indexed by the values of tree-sitter's TSQueryError.
+    private static final String[] ERROR_TYPES = {"none", "syntax", "node type", "field", "capture", "structure", "language"};
+
+    private final int offset;
+    private final int errorType;
+
+    QueryException(int offset, int errorType) {
+        super(String.format("Invalid query: %s error at offset %d", describe(errorType), offset));
+        this.offset = offset;
+        this.errorType = errorType;
+    }
+
+    private static String describe(int errorType) {
+        return errorType >= 0 && errorType < ERROR_TYPES.length ? ERROR_TYPES[errorType] : "unknown";
+    }
+
+    // Byte offset in the query source where compilation failed.
+    public int getOffset() {
+        return offset;
+    }
+
+    // The raw TSQueryError value.
+    public int getErrorType() {
+        return errorType;
+    }
+}
@@ -0,0 +1,22 @@
+package ai.serenade.treesitter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+// Supplies UTF-8 source to `Parser.parse(SourceReader)` one chunk at a time. tree-sitter mostly reads forward,
+// but it can ask for an earlier offset again (e.g. to re-lex a token that started in the previous chunk).
+@FunctionalInterface
+public interface SourceReader {
+    // Copies the source starting at `byteOffset` into `target`, up to its remaining space, and returns the number
+    // of bytes copied. Returns 0 once `byteOffset` is at or past the end of the source.
+    int read(long byteOffset, ByteBuffer target) throws IOException;
+
+    static SourceReader of(SeekableByteChannel channel) {
+        return (byteOffset, target) -> {
+            channel.position(byteOffset);
+            int count = channel.read(target);
+            return Math.max(count, 0);
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package ai.serenade.treesitter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+// Adapts a channel that can't seek. We keep a window of the most recently read bytes so that tree-sitter can go
+// back a little, which is all it needs for a fresh parse: it only re-reads from the start of the current token.
+class StreamSourceReader implements SourceReader {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer window;
+    // Offset of the first byte in the window.
+    private long windowStart = 0;
+    private boolean endOfInput = false;
+
+    StreamSourceReader(ReadableByteChannel channel, int windowSize) {
+        this.channel = channel;
+        this.window = ByteBuffer.allocate(windowSize);
+    }
+
+    @Override
+    public int read(long byteOffset, ByteBuffer target) throws IOException {
+        if (byteOffset < windowStart)
+            throw new IOException(String.format(
+                    "Can't go back to offset %d, the stream was only kept from offset %d", byteOffset, windowStart));
+
+        while (byteOffset >= windowStart + window.position() && !endOfInput) {
+            if (!window.hasRemaining()) {
+                // Keep the newest half of the window and make room for more.
+                int keep = window.capacity() / 2;
+                int discard = window.position() - keep;
+                System.arraycopy(window.array(), discard, window.array(), 0, keep);
+                window.position(keep);
+                windowStart += discard;
+            }
+            if (channel.read(window) < 0)
+                endOfInput = true;
+        }
+
+        long windowEnd = windowStart + window.position();
+        if (byteOffset >= windowEnd)
+            return 0;
+        int count = (int) Math.min(windowEnd - byteOffset, target.remaining());
+        target.put(window.array(), (int) (byteOffset - windowStart), count);
+        return count;
+    }
+}
@@ -1,18 +1,103 @@
 package ai.serenade.treesitter;
 
+// A tree isn't thread-safe, and neither are the nodes and cursors that come from it. To read the same parse from
+// several threads at once, give each thread its own `copy` and take nodes and cursors from that copy only. Copies
+// share the syntax nodes themselves (tree-sitter reference counts them), so they are cheap, and readers of
+// different copies need no locking. Each copy has to be closed, by any thread, once its reader is done.
+// `FlatTree`s are plain Java arrays and can be shared freely.
 public class Tree implements AutoCloseable {
   private long pointer;
+  private final InputEncoding encoding;
 
-  Tree(long pointer) {
+  Tree(long pointer, InputEncoding encoding) {
     this.pointer = pointer;
+    this.encoding = encoding;
+    if (Metrics.ENABLED && pointer != 0)
+      Metrics.treeOpened();
+  }
+
+  Tree(long pointer) {
+    this(pointer, InputEncoding.UTF8);
   }
 
+  // Closing twice is harmless: the pointer is zeroed, and tree-sitter ignores a null tree.
   @Override
   public void close() {
     TreeSitter.treeDelete(pointer);
+    if (Metrics.ENABLED && pointer != 0)
+      Metrics.treeClosed();
+    pointer = 0;
+  }
+
+  public boolean isClosed() {
+    return pointer == 0;
+  }
+
+  // A new handle on the same tree, for use on another thread. It must not be called while another thread edits or
+  // closes this tree, but can be called while others read it.
+  public Tree copy() {
+    return new Tree(TreeSitter.treeCopy(pointer), encoding);
+  }
+
+  long getPointer() {
+    return pointer;
+  }
+
+  public InputEncoding getEncoding() {
+    return encoding;
+  }
+
+  // Records an edit to the source so that the tree can be passed to `Parser.parseString(Tree, String)` and
+  // reused. Nodes obtained before the edit keep their old positions.
+  // For UTF-16 trees, offsets and columns are in UTF-16 code units, like in `export`.
+  public void edit(InputEdit edit) {
+    int shift = offsetShift();
+    TreeSitter.treeEdit(
+        pointer,
+        edit.startByte << shift,
+        edit.oldEndByte << shift,
+        edit.newEndByte << shift,
+        edit.startPoint.row,
+        edit.startPoint.column << shift,
+        edit.oldEndPoint.row,
+        edit.oldEndPoint.column << shift,
+        edit.newEndPoint.row,
+        edit.newEndPoint.column << shift);
+  }
+
+  // tree-sitter counts UTF-16 in bytes; we expose code units, which index straight into the Java string.
+  private int offsetShift() {
+    return encoding == InputEncoding.UTF16 ? 1 : 0;
   }
 
   public Node getRootNode() {
-    return TreeSitter.treeRootNode(pointer);
+    return TreeSitter.treeRootNode(pointer, offsetShift());
+  }
+
+  // Exports every node of the tree in one native call. See `FlatTree`.
+  // For UTF-16 trees, offsets and columns are in UTF-16 code units.
+  public FlatTree export() {
+    var flatTree = new FlatTree(pointer, getLanguage(), TreeSitter.treeFlatten(pointer, offsetShift()), encoding);
+    if (Metrics.ENABLED)
+      Metrics.recordNodesProduced(flatTree.size());
+    return flatTree;
+  }
+
+  // Counts the nodes natively. It visits every node, so it isn't free for big trees.
+  public int getNodeCount() {
+    return TreeSitter.treeNodeCount(pointer);
+  }
+
+  // Exports just the children of one of this tree's nodes, in one native call, for code that only looks at part of
+  // a big tree. Entry i of the result is child i, and `getParent` is -1 for all of them.
+  public FlatTree exportChildren(Node node) {
+    var children = new FlatTree(pointer, getLanguage(), TreeSitter.nodeChildren(node, offsetShift()), encoding);
+    if (Metrics.ENABLED)
+      Metrics.recordNodesProduced(children.size());
+    return children;
+  }
+
+  public Language getLanguage() {
+    return Language.of(TreeSitter.treeLanguage(pointer));
   }
 }
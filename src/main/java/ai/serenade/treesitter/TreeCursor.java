@@ -4,34 +4,61 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 public class TreeCursor implements AutoCloseable, Iterator<TreeCursorNode> {
+    // The current node is read as a `NodeRecord` with the field id after it, so that types and field names come
+    // from the language's interned tables.
+    static final int FIELD_ID = NodeRecord.SIZE;
+    static final int STRIDE = NodeRecord.SIZE + 1;
+
     private long pointer;
     private int context0;
     private int context1;
     private long id;
     private long tree;
+    private final int offsetShift;
+    private final Language language;
+    private final int[] record = new int[STRIDE];
 
     private boolean end = false;
 
-    TreeCursor(long pointer) {
+    TreeCursor(long pointer, int offsetShift, Language language) {
         this.pointer = pointer;
+        this.offsetShift = offsetShift;
+        this.language = language;
+        if (Metrics.ENABLED)
+            Metrics.cursorOpened();
     }
 
     @Override
     public void close() {
         end = true;
         TreeSitter.treeCursorDelete(pointer);
+        if (Metrics.ENABLED)
+            Metrics.cursorClosed();
     }
 
     public Node getCurrentNode() {
-        return TreeSitter.treeCursorCurrentNode(pointer);
+        return TreeSitter.treeCursorCurrentNode(pointer, offsetShift);
     }
 
     public String getCurrentFieldName() {
-        return TreeSitter.treeCursorCurrentFieldName(pointer);
+        return language.getFieldName(getCurrentFieldId());
+    }
+
+    // The id of the current field, or 0 if the current node isn't stored under a field.
+    public int getCurrentFieldId() {
+        return TreeSitter.treeCursorCurrentFieldId(pointer);
     }
 
     public TreeCursorNode getCurrentTreeCursorNode() {
-        return TreeSitter.treeCursorCurrentTreeCursorNode(pointer).cursor(this.pointer);
+        TreeSitter.treeCursorCurrentRecord(pointer, record, offsetShift);
+        return new TreeCursorNode(
+                language.getSymbolName(record[NodeRecord.SYMBOL]),
+                language.getFieldName(record[FIELD_ID]),
+                record[NodeRecord.START_BYTE],
+                record[NodeRecord.END_BYTE],
+                new Point(record[NodeRecord.START_ROW], record[NodeRecord.START_COL]),
+                new Point(record[NodeRecord.END_ROW], record[NodeRecord.END_COL])
+        ).cursor(this.pointer, offsetShift);
     }
 
     public boolean gotoFirstChild() {
@@ -70,7 +97,7 @@ public class TreeCursor implements AutoCloseable, Iterator<TreeCursorNode> {
     @Override
     public TreeCursorNode next() {
         if (end) throw new NoSuchElementException("This cursor is exhausted.");
-        TreeCursorNode currTCNode = this.getCurrentTreeCursorNode().cursor(this.pointer);
+        TreeCursorNode currTCNode = this.getCurrentTreeCursorNode();
         Node curr = this.getCurrentNode();
         if (curr.isNull()) throw new NoSuchElementException("Current Tree sitter node is null.");
         boolean couldTraverseNext = false;
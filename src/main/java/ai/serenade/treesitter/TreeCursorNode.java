@@ -3,6 +3,7 @@ package ai.serenade.treesitter;
 public class TreeCursorNode {
 
     private long mCursor;
+    private int offsetShift;
     private final String type;
     private final String name;
     private final int startByte;
@@ -21,13 +22,14 @@ public class TreeCursorNode {
         this.endPoint = endPoint;
     }
 
-    TreeCursorNode cursor(long cursor) {
+    TreeCursorNode cursor(long cursor, int offsetShift) {
         this.mCursor = cursor;
+        this.offsetShift = offsetShift;
         return this;
     }
 
     public Node getNode() {
-        return TreeSitter.treeCursorCurrentNode(mCursor);
+        return TreeSitter.treeCursorCurrentNode(mCursor, offsetShift);
     }
 
     public String getType() {
@@ -1,5 +1,7 @@
 package ai.serenade.treesitter;
 
+import java.nio.ByteBuffer;
+
 public class TreeSitter {
 
     static {
@@ -13,6 +15,8 @@ public class TreeSitter {
 
     public static native int nodeChildCount(Node node);
 
+    public static native int[] nodeChildren(Node node, int offsetShift);
+
     public static native boolean nodeHasError(Node node);
 
     public static native int nodeEndByte(Node node);
@@ -25,7 +29,7 @@ public class TreeSitter {
 
     public static native String nodeString(Node node);
 
-    public static native String nodeType(Node node);
+    public static native int nodeSymbol(Node node);
 
     public static native boolean nodeIsNull(Node node);
 
@@ -51,17 +55,42 @@ public class TreeSitter {
 
     public static native void parserSetLanguage(long parser, long language);
 
+    public static native void parserReset(long parser);
+
+    public static native void parserSetTimeoutMicros(long parser, long timeout);
+
+    public static native long parserTimeoutMicros(long parser);
+
+    public static native void parserSetCancellationFlag(long parser, long flag);
+
+    public static native long cancellationFlagNew();
+
+    public static native void cancellationFlagDelete(long flag);
+
+    public static native void cancellationFlagSet(long flag, boolean cancelled);
+
+    public static native boolean cancellationFlagGet(long flag);
+
     public static native long parserParseBytes(long parser, byte[] source, int length);
 
     public static native long parserParseBytesUTF8(long parser, byte[] source, int length);
 
+    public static native long parserIncrementalParseBytesUTF8(long parser, long oldTree, byte[] source, int length);
+
+    public static native long parserParseDirectBuffer(long parser, long oldTree, ByteBuffer source, int offset, int length);
+
+    public static native long parserParseStringUTF16(long parser, long oldTree, String source);
+
+    static native long parserParseInput(long parser, long oldTree, Parser.ChunkInput input, ByteBuffer chunk);
+
     public static native long treeCursorNew(Node node);
 
-    public static native TreeCursorNode treeCursorCurrentTreeCursorNode(long cursor);
+    // Writes the current node as a `NodeRecord` followed by its field id, see `TreeCursor`.
+    public static native void treeCursorCurrentRecord(long cursor, int[] record, int offsetShift);
 
-    public static native String treeCursorCurrentFieldName(long cursor);
+    public static native int treeCursorCurrentFieldId(long cursor);
 
-    public static native Node treeCursorCurrentNode(long cursor);
+    public static native Node treeCursorCurrentNode(long cursor, int offsetShift);
 
     public static native void treeCursorDelete(long cursor);
 
@@ -71,9 +100,81 @@ public class TreeSitter {
 
     public static native boolean treeCursorGotoParent(long cursor);
 
+    public static native long treeWalkerNew(Node node, boolean postorder);
+
+    public static native int treeWalkerNext(long walker, int[] records);
+
+    public static native void treeWalkerDelete(long walker);
+
+    public static native long treeCopy(long tree);
+
     public static native void treeDelete(long tree);
 
-    public static native Node treeRootNode(long tree);
+    public static native void treeEdit(long tree, int startByte, int oldEndByte, int newEndByte, int startRow,
+                                       int startColumn, int oldEndRow, int oldEndColumn, int newEndRow, int newEndColumn);
+
+    public static native Node treeRootNode(long tree, int offsetShift);
+
+    public static native int[] treeFlatten(long tree, int offsetShift);
+
+    public static native long treeLanguage(long tree);
+
+    public static native int treeNodeCount(long tree);
 
     public static native Node nodeGetChildByFieldName(Node node, String fieldName);
+
+    public static native Node nodeGetChildByFieldId(Node node, int fieldId);
+
+    public static native Node nodeDescendantForByteRange(Node node, int startByte, int endByte, boolean named);
+
+    public static native Node nodeDescendantForPointRange(
+            Node node, int startRow, int startColumn, int endRow, int endColumn, boolean named);
+
+    public static native Node nodeFirstChildForByte(Node node, int byteOffset, boolean named);
+
+    public static native long queryNew(long language, byte[] source, int length, int[] error);
+
+    public static native void queryDelete(long query);
+
+    public static native int queryPatternCount(long query);
+
+    public static native int queryCaptureCount(long query);
+
+    public static native String queryCaptureName(long query, int captureIndex);
+
+    public static native long queryCursorNew();
+
+    public static native void queryCursorDelete(long cursor);
+
+    public static native void queryCursorExec(long cursor, long query, Node node);
+
+    public static native void queryCursorSetByteRange(long cursor, int startByte, int endByte);
+
+    public static native void queryCursorSetPointRange(long cursor, int startRow, int startColumn, int endRow, int endColumn);
+
+    public static native int queryCursorNextMatches(long cursor, int[] records);
+
+    public static native int queryCursorNextCaptures(long cursor, int[] records);
+
+    public static native int languageSymbolCount(long language);
+
+    public static native String languageSymbolName(long language, int symbol);
+
+    public static native int languageSymbolType(long language, int symbol);
+
+    public static native int languageFieldCount(long language);
+
+    public static native String languageFieldName(long language, int fieldId);
+
+    // Returns 0 and sets error[0] if the library or its language function can't be loaded.
+    public static native long languageLoad(String libraryPath, String symbolName, String[] error);
+
+    // JNI call counters for `Metrics`. The metrics natives themselves aren't counted.
+    static native void metricsSetEnabled(boolean enabled);
+
+    static native int metricsJniCallCount();
+
+    static native String metricsJniCallName(int index);
+
+    static native long metricsJniCallValue(int index);
 }
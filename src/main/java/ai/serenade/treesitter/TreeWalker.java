@@ -0,0 +1,66 @@
+package ai.serenade.treesitter;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Walks a subtree in pre-order or post-order. Nodes are read from the native side in batches, one JNI call per
+// `batchSize` nodes, and handed out through a single reused `WalkNode`, so a walk doesn't allocate per node.
+// Unlike `TreeCursor`, this is much cheaper than calling the getters on `Node` for every node.
+public class TreeWalker implements AutoCloseable, Iterator<WalkNode> {
+    public enum Order {
+        PREORDER,
+        POSTORDER
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    static final int DEPTH = NodeRecord.SIZE;
+    static final int FIELD_ID = NodeRecord.SIZE + 1;
+    static final int STRIDE = NodeRecord.SIZE + 2;
+
+    private final long pointer;
+    private final int[] records;
+    private final WalkNode current;
+    private int size = 0;
+    private int index = 0;
+    private boolean exhausted = false;
+
+    TreeWalker(Node root, Order order, int batchSize) {
+        this.pointer = TreeSitter.treeWalkerNew(root, order == Order.POSTORDER);
+        this.records = new int[Math.max(1, batchSize) * STRIDE];
+        long tree = root.getTree();
+        this.current = new WalkNode(Language.of(TreeSitter.treeLanguage(tree)), tree, root.getOffsetShift());
+        if (Metrics.ENABLED)
+            Metrics.cursorOpened();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < size)
+            return true;
+        if (exhausted)
+            return false;
+        size = TreeSitter.treeWalkerNext(pointer, records);
+        index = 0;
+        if (Metrics.ENABLED)
+            Metrics.recordNodesProduced(size);
+        // A short batch means the walk is over.
+        exhausted = size < records.length / STRIDE;
+        return size > 0;
+    }
+
+    @Override
+    public WalkNode next() {
+        if (!hasNext())
+            throw new NoSuchElementException("This walker is exhausted.");
+        current.moveTo(records, index++ * STRIDE);
+        return current;
+    }
+
+    @Override
+    public void close() {
+        TreeSitter.treeWalkerDelete(pointer);
+        if (Metrics.ENABLED)
+            Metrics.cursorClosed();
+    }
+}
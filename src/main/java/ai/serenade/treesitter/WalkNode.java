@@ -0,0 +1,95 @@
+package ai.serenade.treesitter;
+
+// The node a `TreeWalker` is at. There is a single instance per walker, which is moved along on every `next`
+// call, so copy out whatever you need to keep.
+public final class WalkNode {
+    private final Language language;
+    private final long tree;
+    private final int offsetShift;
+    private int[] records;
+    private int offset;
+
+    WalkNode(Language language, long tree, int offsetShift) {
+        this.language = language;
+        this.tree = tree;
+        this.offsetShift = offsetShift;
+    }
+
+    void moveTo(int[] records, int offset) {
+        this.records = records;
+        this.offset = offset;
+    }
+
+    public int getSymbol() {
+        return records[offset + NodeRecord.SYMBOL];
+    }
+
+    // The interned type name, same as `Node.getType`.
+    public String getType() {
+        return language.getSymbolName(getSymbol());
+    }
+
+    // Depth below the node the walk started at, which has depth 0.
+    public int getDepth() {
+        return records[offset + TreeWalker.DEPTH];
+    }
+
+    public int getFieldId() {
+        return records[offset + TreeWalker.FIELD_ID];
+    }
+
+    // The interned field name, or null if the node isn't stored under a field.
+    public String getFieldName() {
+        return language.getFieldName(getFieldId());
+    }
+
+    public int getStartByte() {
+        return records[offset + NodeRecord.START_BYTE];
+    }
+
+    public int getEndByte() {
+        return records[offset + NodeRecord.END_BYTE];
+    }
+
+    public int getStartRow() {
+        return records[offset + NodeRecord.START_ROW];
+    }
+
+    public int getStartColumn() {
+        return records[offset + NodeRecord.START_COL];
+    }
+
+    public int getEndRow() {
+        return records[offset + NodeRecord.END_ROW];
+    }
+
+    public int getEndColumn() {
+        return records[offset + NodeRecord.END_COL];
+    }
+
+    public boolean isNamed() {
+        return NodeRecord.hasFlag(records, offset, NodeRecord.FLAG_NAMED);
+    }
+
+    public boolean hasError() {
+        return NodeRecord.hasFlag(records, offset, NodeRecord.FLAG_HAS_ERROR);
+    }
+
+    public boolean isMissing() {
+        return NodeRecord.hasFlag(records, offset, NodeRecord.FLAG_MISSING);
+    }
+
+    public boolean isExtra() {
+        return NodeRecord.hasFlag(records, offset, NodeRecord.FLAG_EXTRA);
+    }
+
+    // Allocates. Prefer the row and column getters in loops.
+    public Range getRange() {
+        return NodeRecord.toRange(records, offset);
+    }
+
+    // Rebuilds the tree-sitter handle of the current node without a native call.
+    public Node getNode() {
+        return NodeRecord.toNode(records, offset, tree, offsetShift);
+    }
+}
@@ -0,0 +1,185 @@
+package mytree;
+
+import ai.serenade.treesitter.Node;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+// A view of one node of a `CompactTree`. It has no state of its own besides the tree and the index, so views are
+// made on demand and thrown away; two views of the same node are equal.
+final class CompactNode extends MyNode {
+    private final CompactTree tree;
+    private final int index;
+
+    CompactNode(CompactTree tree, int index) {
+        super(tree.source());
+        this.tree = tree;
+        this.index = index;
+    }
+
+    int index() {
+        return index;
+    }
+
+    @Override
+    public Node getInternalNode() {
+        return tree.internalNode(index);
+    }
+
+    @Override
+    public String type() {
+        return tree.type(index);
+    }
+
+    @Override
+    public int startByte() {
+        return tree.startByte(index);
+    }
+
+    @Override
+    public int endByte() {
+        return tree.endByte(index);
+    }
+
+    // Spans are made on every call unless an action replaced this one. Views never consume anything in a span
+    // that's thrown away, so nothing is lost.
+    @Override
+    public Span span() {
+        var span = tree.spans.get(index);
+        return span != null ? span : new Span(tree.range(index));
+    }
+
+    @Override
+    void setSpan(Span span) {
+        tree.spans.put(index, span);
+    }
+
+    @Override
+    public void resetSpan() {
+        // Only replaced spans are kept, so only they can have consumed spans to reset.
+        var span = tree.spans.get(index);
+        if (span != null)
+            span.reset();
+    }
+
+    @Override
+    public MyNode parent() {
+        var parent = tree.parents.get(index);
+        if (parent != null)
+            return parent;
+        int parentIndex = tree.parentIndex(index);
+        return parentIndex < 0 ? null : tree.node(parentIndex);
+    }
+
+    @Override
+    public void setParent(MyNode parent) {
+        tree.parents.put(index, parent);
+    }
+
+    @Override
+    public List<MyNode> children() {
+        var children = tree.childLists.get(index);
+        return children != null ? children : new ChildList();
+    }
+
+    // The `children` field is never set for views, so this goes through the tree's child lists.
+    @Override
+    public void appendChild(MyNode child) {
+        children().add(child);
+    }
+
+    @Override
+    public boolean isLeaf() {
+        var children = tree.childLists.get(index);
+        return children != null ? children.isEmpty() : tree.subtreeEnd(index) == index + 1;
+    }
+
+    @Override
+    public boolean isDeleted() {
+        return tree.deleted.get(index);
+    }
+
+    @Override
+    void markDeleted(boolean deleted) {
+        tree.deleted.set(index, deleted);
+    }
+
+    @Override
+    public void setDeleted(boolean deleted) {
+        // While no child list has been changed, the subtree is exactly the range of indices up to its end.
+        if (tree.childLists.isEmpty())
+            tree.deleted.set(index, tree.subtreeEnd(index), deleted);
+        else
+            super.setDeleted(deleted);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompactNode other && other.tree == tree && other.index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return index;
+    }
+
+    // The children as they were parsed. The first change copies them into a regular list that the tree keeps from
+    // then on.
+    private class ChildList extends AbstractList<MyNode> {
+        private final int[] indices;
+        private List<MyNode> changed;
+
+        ChildList() {
+            int count = 0;
+            for (int child = index + 1; child < tree.subtreeEnd(index); child = tree.subtreeEnd(child))
+                count++;
+            indices = new int[count];
+            count = 0;
+            for (int child = index + 1; child < tree.subtreeEnd(index); child = tree.subtreeEnd(child))
+                indices[count++] = child;
+        }
+
+        // The changed list, if this list or another view of the same children has been changed.
+        private List<MyNode> current() {
+            if (changed == null)
+                changed = tree.childLists.get(index);
+            return changed;
+        }
+
+        private List<MyNode> changed() {
+            if (current() == null) {
+                changed = new ArrayList<>(indices.length + 1);
+                for (var child : indices)
+                    changed.add(tree.node(child));
+                tree.childLists.put(index, changed);
+            }
+            return changed;
+        }
+
+        @Override
+        public MyNode get(int i) {
+            return current() != null ? changed.get(i) : tree.node(indices[i]);
+        }
+
+        @Override
+        public int size() {
+            return current() != null ? changed.size() : indices.length;
+        }
+
+        @Override
+        public MyNode set(int i, MyNode node) {
+            return changed().set(i, node);
+        }
+
+        @Override
+        public void add(int i, MyNode node) {
+            changed().add(i, node);
+        }
+
+        @Override
+        public MyNode remove(int i) {
+            return changed().remove(i);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package mytree;
+
+import ai.serenade.treesitter.FlatTree;
+import ai.serenade.treesitter.Language;
+import ai.serenade.treesitter.Node;
+import ai.serenade.treesitter.Range;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A tree of `MyNode`s that doesn't keep a `MyNode` per syntax node. Nodes are their pre-order index, and the tree
+// copies only the columns of the exported `FlatTree` that views read (symbol, offsets, positions and parent) plus
+// where each node's subtree ends: the children of node i are i + 1, then the end of that child's subtree, and so
+// on. That's 36 bytes per node, and the `FlatTree` can be dropped once the tree is built. `node(i)` hands out a
+// small view, and views of the same node are equal, so code written against `MyNode` (actions, `SourceGenerator`)
+// works unchanged. Spans are made on demand and not kept; node handles are found again from the root when asked for.
+// What actions change is kept on the side: deletions in a bit set, and child lists, parents and spans in maps that
+// only get entries for the nodes that were actually touched.
+public final class CompactTree {
+    private final Language language;
+    private final String source;
+    private final Node rootNode;
+    private final int[] symbols;
+    private final int[] startBytes;
+    private final int[] endBytes;
+    private final int[] startRows;
+    private final int[] startColumns;
+    private final int[] endRows;
+    private final int[] endColumns;
+    private final int[] parentIndices;
+    private final int[] subtreeEnds;
+
+    final BitSet deleted = new BitSet();
+    final Map<Integer, List<MyNode>> childLists = new HashMap<>();
+    final Map<Integer, MyNode> parents = new HashMap<>();
+    final Map<Integer, Span> spans = new HashMap<>();
+
+    public CompactTree(FlatTree flatTree, String source) {
+        this.language = flatTree.getLanguage();
+        this.source = source;
+        rootNode = flatTree.getNode(0);
+        int size = flatTree.size();
+        symbols = new int[size];
+        startBytes = new int[size];
+        endBytes = new int[size];
+        startRows = new int[size];
+        startColumns = new int[size];
+        endRows = new int[size];
+        endColumns = new int[size];
+        parentIndices = new int[size];
+        subtreeEnds = new int[size];
+        for (var i = 0; i < size; i++) {
+            symbols[i] = flatTree.getSymbol(i);
+            startBytes[i] = flatTree.getStartByte(i);
+            endBytes[i] = flatTree.getEndByte(i);
+            startRows[i] = flatTree.getStartRow(i);
+            startColumns[i] = flatTree.getStartColumn(i);
+            endRows[i] = flatTree.getEndRow(i);
+            endColumns[i] = flatTree.getEndColumn(i);
+            parentIndices[i] = flatTree.getParent(i);
+        }
+        // A subtree ends where its last child's subtree ends, and children come after their parents.
+        for (var i = size - 1; i >= 0; i--) {
+            subtreeEnds[i] = Math.max(subtreeEnds[i], i + 1);
+            if (i > 0) {
+                int parent = parentIndices[i];
+                subtreeEnds[parent] = Math.max(subtreeEnds[parent], subtreeEnds[i]);
+            }
+        }
+    }
+
+    public String source() {
+        return source;
+    }
+
+    public int size() {
+        return subtreeEnds.length;
+    }
+
+    public MyNode root() {
+        return node(0);
+    }
+
+    public MyNode node(int index) {
+        return new CompactNode(this, index);
+    }
+
+    // The index after the last node in this node's subtree.
+    int subtreeEnd(int index) {
+        return subtreeEnds[index];
+    }
+
+    // The index of the parent node, or -1 for the root.
+    int parentIndex(int index) {
+        return parentIndices[index];
+    }
+
+    int startByte(int index) {
+        return startBytes[index];
+    }
+
+    int endByte(int index) {
+        return endBytes[index];
+    }
+
+    String type(int index) {
+        return language.getSymbolName(symbols[index]);
+    }
+
+    Range range(int index) {
+        return new Range(startRows[index], startColumns[index], endRows[index], endColumns[index]);
+    }
+
+    // The tree-sitter handle, found by going down from the root through the same child positions. The nodes are
+    // the visible ones in both trees, so positions line up. The tree must still be open.
+    Node internalNode(int index) {
+        int parent = parentIndices[index];
+        if (parent < 0)
+            return rootNode;
+        int position = 0;
+        for (int child = parent + 1; child != index; child = subtreeEnds[child])
+            position++;
+        return internalNode(parent).getChild(position);
+    }
+
+    // The index of a node from the tree this was built from, or -1. Nodes are in pre-order, which also orders
+    // them by start byte, so we only look at the nodes that start where this one does. A node and its only child
+    // can have the same range and symbol; only then do we compare ids, which needs the handles.
+    int indexOf(Node node) {
+        int startByte = node.getStartByte();
+        int endByte = node.getEndByte();
+        int symbol = node.getSymbol();
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (startBytes[middle] < startByte)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        int found = -1;
+        for (int i = low; i < size() && startBytes[i] == startByte; i++) {
+            if (endBytes[i] != endByte || symbols[i] != symbol)
+                continue;
+            if (found >= 0)
+                return internalNode(found).getId() == node.getId() ? found : indexOfById(node, i);
+            found = i;
+        }
+        return found;
+    }
+
+    private int indexOfById(Node node, int from) {
+        long id = node.getId();
+        for (int i = from; i < size() && startBytes[i] == startBytes[from]; i++) {
+            if (endBytes[i] == endBytes[from] && symbols[i] == symbols[from] && internalNode(i).getId() == id)
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,115 @@
+package mytree;
+
+import ai.serenade.treesitter.Node;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+// A node whose children are only made, with one native call, the first time they're asked for. It also keeps
+// track of whether anything in its subtree has changed, so that `SourceGenerator` can copy untouched subtrees from
+// the source instead of going through their leaves. The tree it comes from must stay open while it's used.
+final class LazyNode extends MyNode {
+    private final TreeWrapper wrapper;
+    private boolean modified;
+
+    LazyNode(TreeWrapper wrapper, Node internalNode, MyNode parent, String refString, Span span) {
+        super(internalNode, parent, refString, span, null);
+        this.wrapper = wrapper;
+    }
+
+    @Override
+    public List<MyNode> children() {
+        if (children == null) {
+            var flatTree = wrapper.lazyTree().exportChildren(getInternalNode());
+            var list = new ChildList(flatTree.size());
+            for (var i = 0; i < flatTree.size(); i++) {
+                var child = new LazyNode(wrapper, flatTree.getNode(i), this, refString(), new Span(flatTree.getRange(i)));
+                child.setByteRange(flatTree.getStartByte(i), flatTree.getEndByte(i));
+                // A subtree deleted before it was built is deleted as a whole.
+                child.markDeleted(isDeleted());
+                list.load(child);
+            }
+            children = list;
+            wrapper.lazyNodesBuilt(list.size());
+        }
+        return children;
+    }
+
+    @Override
+    public void setDeleted(boolean deleted) {
+        setDeletedInSubtree(deleted);
+        if (parent() != null)
+            parent().markModified();
+    }
+
+    // Only goes through the children that were already made; the others take the flag from their parent.
+    private void setDeletedInSubtree(boolean deleted) {
+        markDeleted(deleted);
+        if (children == null)
+            return;
+        for (var child : children) {
+            if (child instanceof LazyNode lazy)
+                lazy.setDeletedInSubtree(deleted);
+            else
+                child.setDeleted(deleted);
+        }
+    }
+
+    @Override
+    public void markModified() {
+        // Once a node is modified, so are all of its ancestors.
+        MyNode node = this;
+        while (node instanceof LazyNode lazy && !lazy.modified) {
+            lazy.modified = true;
+            node = lazy.parent();
+        }
+    }
+
+    @Override
+    public boolean isUntouched() {
+        return !modified;
+    }
+
+    // Marks the node as modified when it's changed, e.g. by `InsertSibling`. Every mutation, including the bulk
+    // ones like `removeIf`, `sort` and `subList(...).clear()`, ends up in `set`, `add` or `remove`.
+    private class ChildList extends AbstractList<MyNode> {
+        private final ArrayList<MyNode> nodes;
+
+        ChildList(int capacity) {
+            nodes = new ArrayList<>(capacity);
+        }
+
+        void load(MyNode child) {
+            nodes.add(child);
+        }
+
+        @Override
+        public MyNode get(int index) {
+            return nodes.get(index);
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+
+        @Override
+        public MyNode set(int index, MyNode node) {
+            markModified();
+            return nodes.set(index, node);
+        }
+
+        @Override
+        public void add(int index, MyNode node) {
+            markModified();
+            nodes.add(index, node);
+        }
+
+        @Override
+        public MyNode remove(int index) {
+            markModified();
+            return nodes.remove(index);
+        }
+    }
+}
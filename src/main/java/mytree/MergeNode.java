@@ -14,14 +14,14 @@ public class MergeNode extends MyNode {
     public MergeNode(MyNode node, MyNode parent, String refString, boolean affectsRow, Span offset) {
         super(node.getInternalNode(), parent, refString);
         this.myNode = node;
-        this.children = node.children;
+        this.children = node.children();
         this.affectsRow = affectsRow;
         this.offset = offset;
     }
 
     @Override
     public List<MyNode> children() {
-        return myNode.children;
+        return myNode.children();
     }
 
     public Span offset() {
@@ -9,10 +9,13 @@ import java.util.Objects;
 public class MyNode {
     private Node internalNode;
     private MyNode parent;
-    List<MyNode> children = new ArrayList<>();
+    List<MyNode> children;
     private Span span;
 
     private boolean isDeleted;
+    // Set by wrappers from the exported tree; -1 when they have to come from the native node.
+    private int startByte = -1;
+    private int endByte = -1;
 
     private final String refString;
 
@@ -21,23 +24,58 @@ public class MyNode {
     }
 
     public MyNode(Node internalNode, MyNode parent, String refString) {
+        this(internalNode, parent, refString, new Span(internalNode.getRange()));
+    }
+
+    // Used when the span is already known (e.g. from a `FlatTree`), so that we don't have to ask the native side.
+    public MyNode(Node internalNode, MyNode parent, String refString, Span span) {
+        this(internalNode, parent, refString, span, new ArrayList<>());
+    }
+
+    // `children` may be null for nodes that make them on demand, like `LazyNode`.
+    MyNode(Node internalNode, MyNode parent, String refString, Span span, List<MyNode> children) {
         this.parent = parent;
         this.refString = refString;
         this.internalNode = internalNode;
-        this.span = new Span(internalNode.getRange());
+        this.span = span;
+        this.children = children;
+    }
+
+    // For views that keep their state elsewhere, like `CompactNode`, and override everything that reads it.
+    MyNode(String refString) {
+        this.refString = refString;
     }
 
     private void setSpanRecursiveHelper(MyNode node, Span newSpan) {
-        for (var child : node.children) {
-            child.span = newSpan;
+        for (var child : node.children()) {
+            child.setSpan(newSpan);
             child.setSpanRecursiveHelper(child, newSpan);
         }
     }
 
+    void setSpan(Span span) {
+        this.span = span;
+    }
+
     public void setSpanRecursive(Span span) {
         setSpanRecursiveHelper(this, span);
     }
 
+    // Where the node starts and ends in `refString`: in bytes of its UTF-8 encoding, or in code units if the tree was
+    // parsed from UTF-16.
+    public int startByte() {
+        return startByte >= 0 ? startByte : internalNode.getStartByte();
+    }
+
+    public int endByte() {
+        return endByte >= 0 ? endByte : internalNode.getEndByte();
+    }
+
+    void setByteRange(int startByte, int endByte) {
+        this.startByte = startByte;
+        this.endByte = endByte;
+    }
+
     public String refString() {
         return refString;
     }
@@ -46,11 +84,15 @@ public class MyNode {
         this(internalNode, null, refString);
     }
 
+    void markDeleted(boolean deleted) {
+        isDeleted = deleted;
+    }
+
     private void setDeletedHelper(MyNode parent, boolean deleted) {
-        parent.isDeleted = deleted;
+        parent.markDeleted(deleted);
         if (parent.isLeaf())
             return;
-        for (var child : parent.children)
+        for (var child : parent.children())
             setDeletedHelper(child, deleted);
     }
 
@@ -58,6 +100,17 @@ public class MyNode {
         setDeletedHelper(this, deleted);
     }
 
+    // Records that something in this node's subtree changed. Lazy wrappers copy untouched subtrees straight from the
+    // source, so code that changes a lazy tree other than through `setDeleted` and `children()` has to call this.
+    public void markModified() {
+    }
+
+    // Whether nothing in this subtree has changed since it was parsed. Only lazy nodes keep track of that; for
+    // others we can't tell, so it's false.
+    public boolean isUntouched() {
+        return false;
+    }
+
     public void appendChild(MyNode child) {
         children.add(child);
     }
@@ -75,22 +128,28 @@ public class MyNode {
     }
 
     public boolean isLeaf() {
-        return children.size() == 0;
+        return children().size() == 0;
     }
 
     public Node getInternalNode() {
         return internalNode;
     }
 
+    // The tree-sitter type, e.g. "identifier". Views that don't keep a handle override this to skip the lookup.
+    public String type() {
+        return getInternalNode().getType();
+    }
+
     @Override
     public String toString() {
         String leafOrNoLeaf = isLeaf() ? " (Leaf)" : "";
+        var span = span();
         String position = String.format("[(%d, %d), (%d, %d)]", span.startRow(), span.startCol(), span.endRow(), span.endCol());
-        return String.format("Type: %s, Range: %s%s", internalNode.getType(), position, leafOrNoLeaf);
+        return String.format("Type: %s, Range: %s%s", type(), position, leafOrNoLeaf);
     }
 
     public void resetSpan() {
-        span.reset();
+        span().reset();
     }
 
     public Span span() {
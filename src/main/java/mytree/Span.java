@@ -4,17 +4,20 @@ import ai.serenade.treesitter.Range;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class Span {
     private Range range;
-    private List<Span> consumedSpans = new ArrayList<>();
+    // Made on the first `consume`, since most spans never consume anything.
+    private List<Span> consumedSpans;
 
     public Span(Range range) {
         this.range = range;
     }
 
     public void reset() {
-        consumedSpans.clear();
+        if (consumedSpans != null)
+            consumedSpans.clear();
     }
 
     // For a span to contain another span, it has to appear first (or equal) in source and end last (or equal).
@@ -37,6 +40,8 @@ public class Span {
 
     private boolean slotIsConsumed(Span span) {
         // If a consumed span contains this span, then this span is consumed as well.
+        if (consumedSpans == null)
+            return false;
         for (var consumed : consumedSpans) {
             if (consumed.contains(span))
                 return true;
@@ -50,6 +55,8 @@ public class Span {
             throw new RuntimeException("This span doesn't contain the other span!");
         if (slotIsConsumed(span))
             throw new RuntimeException("Span slot is consumed!");
+        if (consumedSpans == null)
+            consumedSpans = new ArrayList<>();
         consumedSpans.add(span);
     }
 
@@ -75,4 +82,9 @@ public class Span {
             return false;
         return startRow() == other.startRow() && startCol() == other.startCol() && endRow() == other.endRow() && endCol() == other.endCol();
     }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(startRow(), startCol(), endRow(), endCol());
+    }
 }
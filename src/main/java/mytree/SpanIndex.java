@@ -0,0 +1,91 @@
+package mytree;
+
+import ai.serenade.treesitter.FlatTree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// Finds nodes by span with binary searches instead of walking the tree. The parsed nodes are kept in pre-order,
+// which is also the order of their start positions, and positions are packed as row << 32 | column so that they
+// compare as longs. Actions never change the spans of parsed nodes, so the index stays valid as the tree is
+// edited; nodes that actions insert are added to a small sorted side list.
+final class SpanIndex {
+    // The parsed node at a pre-order index.
+    private final IntFunction<MyNode> nodes;
+    private final long[] starts;
+    private final long[] ends;
+    // Inserted nodes, sorted by start.
+    private final List<MyNode> inserted = new ArrayList<>();
+
+    SpanIndex(FlatTree flatTree, IntFunction<MyNode> nodes) {
+        this.nodes = nodes;
+        starts = new long[flatTree.size()];
+        ends = new long[flatTree.size()];
+        for (var i = 0; i < starts.length; i++) {
+            starts[i] = (long) flatTree.getStartRow(i) << 32 | flatTree.getStartColumn(i);
+            ends[i] = (long) flatTree.getEndRow(i) << 32 | flatTree.getEndColumn(i);
+        }
+    }
+
+    static long start(Span span) {
+        return (long) span.startRow() << 32 | span.startCol();
+    }
+
+    static long end(Span span) {
+        return (long) span.endRow() << 32 | span.endCol();
+    }
+
+    // The index of the first parsed node that starts at or after `position`.
+    private int lowerBound(long position) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] < position)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // The outermost node with exactly this span, or null. Among nodes that start at the same position, pre-order
+    // puts ancestors first, so the first match is the outermost one.
+    MyNode exact(Span span) {
+        long start = start(span);
+        long end = end(span);
+        for (int i = lowerBound(start); i < starts.length && starts[i] == start; i++) {
+            if (ends[i] == end)
+                return nodes.apply(i);
+        }
+        for (var node : inserted) {
+            if (node.span().equals(span))
+                return node;
+        }
+        return null;
+    }
+
+    // The smallest parsed node that contains the span, or null if it's outside the tree. The last node starting at
+    // or before the span is either that node or inside it, so we only have to climb from there.
+    MyNode enclosing(Span span) {
+        long start = start(span);
+        long end = end(span);
+        int index = lowerBound(start + 1) - 1;
+        if (index < 0)
+            return null;
+        for (var node = nodes.apply(index); node != null; node = node.parent()) {
+            if (start(node.span()) <= start && end(node.span()) >= end)
+                return node;
+        }
+        return null;
+    }
+
+    void add(MyNode node) {
+        long start = start(node.span());
+        int position = 0;
+        while (position < inserted.size() && start(inserted.get(position).span()) <= start)
+            position++;
+        inserted.add(position, node);
+    }
+}
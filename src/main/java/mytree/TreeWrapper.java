@@ -1,18 +1,129 @@
 package mytree;
 
+import ai.serenade.treesitter.FlatTree;
+import ai.serenade.treesitter.InputEncoding;
+import ai.serenade.treesitter.Language;
 import ai.serenade.treesitter.Node;
+import ai.serenade.treesitter.Point;
 import ai.serenade.treesitter.Tree;
 import srcgen.SourceGenerator;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class TreeWrapper {
     private final MyNode root;
+    private final Language language;
+    private final String source;
+    // Only counted when asked for in lazy wrappers, which is when it's -1.
+    private int nodeCount;
+    private final boolean hasErrors;
+    private final InputEncoding encoding;
+    // The nodes built from the tree, in pre-order, unless the wrapper is compact. Nodes that actions add later
+    // aren't in here.
+    private final MyNode[] nodes;
+    private final CompactTree compactTree;
+    // The tree that a lazy wrapper makes its nodes from, see `lazy`, and how many it has made.
+    private final Tree lazyTree;
+    private int lazyNodesBuilt;
+    // Built on the first native lookup.
+    private Map<Long, MyNode> nodesById;
+    // Only built when asked for, see `TreeWrapper(FlatTree, String, boolean)`.
+    private final SpanIndex spanIndex;
 
     public TreeWrapper(Tree sitterTree, String commonSource) {
-        var rootNode = sitterTree.getRootNode();
-        root = new MyNode(rootNode, commonSource);
-        buildTree(root, rootNode, commonSource);
+        this(sitterTree.export(), commonSource);
+    }
+
+    public TreeWrapper(Tree sitterTree, String commonSource, boolean indexSpans) {
+        this(sitterTree.export(), commonSource, indexSpans);
+    }
+
+    public TreeWrapper(FlatTree flatTree, String commonSource) {
+        this(flatTree, commonSource, false);
+    }
+
+    public TreeWrapper(FlatTree flatTree, String commonSource, boolean indexSpans) {
+        this(flatTree, commonSource, indexSpans, false);
+    }
+
+    // Builds the wrapper from an exported tree. The only native state we keep are the node handles.
+    // With `indexSpans`, span lookups use a sorted index of the nodes' spans: O(log n) and without JNI, which pays
+    // off when a fix looks up many spans, and also works after the tree has been closed.
+    // With `compact`, the nodes are views over a `CompactTree` instead of one `MyNode` each, which takes a fraction
+    // of the memory for big files. Views are made on demand, so compare them with `equals` rather than `==`.
+    public TreeWrapper(FlatTree flatTree, String commonSource, boolean indexSpans, boolean compact) {
+        var event = new TreeWrapEvent();
+        event.begin();
+        language = flatTree.getLanguage();
+        source = commonSource;
+        nodeCount = flatTree.size();
+        hasErrors = flatTree.hasError(0);
+        encoding = flatTree.getEncoding();
+        lazyTree = null;
+        if (compact) {
+            compactTree = new CompactTree(flatTree, commonSource);
+            nodes = null;
+            root = compactTree.root();
+            spanIndex = indexSpans ? new SpanIndex(flatTree, compactTree::node) : null;
+        } else {
+            compactTree = null;
+            nodes = new MyNode[flatTree.size()];
+            root = new MyNode(flatTree.getNode(0), null, commonSource, new Span(flatTree.getRange(0)));
+            root.setByteRange(flatTree.getStartByte(0), flatTree.getEndByte(0));
+            nodes[0] = root;
+            // Nodes are in pre-order, so a parent always comes before its children.
+            for (var i = 1; i < nodes.length; i++) {
+                var parent = nodes[flatTree.getParent(i)];
+                var node = new MyNode(flatTree.getNode(i), parent, commonSource, new Span(flatTree.getRange(i)));
+                node.setByteRange(flatTree.getStartByte(i), flatTree.getEndByte(i));
+                parent.appendChild(node);
+                nodes[i] = node;
+            }
+            spanIndex = indexSpans ? new SpanIndex(flatTree, i -> nodes[i]) : null;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.language = language.toString();
+            event.inputSize = sourceBytes();
+            event.nodeCount = nodeCount;
+            event.hasErrors = hasErrors;
+            event.commit();
+        }
+    }
+
+    private TreeWrapper(Tree sitterTree, String commonSource, Node rootNode) {
+        language = sitterTree.getLanguage();
+        source = commonSource;
+        nodeCount = -1;
+        hasErrors = rootNode.hasError();
+        encoding = sitterTree.getEncoding();
+        nodes = null;
+        compactTree = null;
+        spanIndex = null;
+        lazyTree = sitterTree;
+        root = new LazyNode(this, rootNode, null, commonSource, new Span(rootNode.getRange()));
+        lazyNodesBuilt = 1;
+        root.setByteRange(rootNode.getStartByte(), rootNode.getEndByte());
+    }
+
+    // A wrapper that builds nothing up front: a node's children are made the first time they're asked for, so a fix
+    // only pays for the part of the tree it goes through. `SourceGenerator` copies the subtrees that nothing changed
+    // straight from the source, whitespace included. The tree must stay open while the wrapper is used.
+    public static TreeWrapper lazy(Tree sitterTree, String commonSource) {
+        var event = new TreeWrapEvent();
+        event.begin();
+        var wrapper = new TreeWrapper(sitterTree, commonSource, sitterTree.getRootNode());
+        event.end();
+        if (event.shouldCommit()) {
+            event.language = wrapper.language.toString();
+            event.inputSize = wrapper.sourceBytes();
+            event.nodeCount = wrapper.builtNodeCount();
+            event.hasErrors = wrapper.hasErrors;
+            event.commit();
+        }
+        return wrapper;
     }
 
     private MyNode lookupNodeBySpan(MyNode current, Span span) {
@@ -28,28 +139,175 @@ public class TreeWrapper {
             }
         }
 
-        throw new RuntimeException("Shouldn't happen");
+        throw new RuntimeException(String.format("No node has the span [(%d, %d), (%d, %d)]",
+                span.startRow(), span.startCol(), span.endRow(), span.endCol()));
     }
 
+    // Returns the outermost node with exactly this span. With a span index that's a binary search. Lazy wrappers ask
+    // tree-sitter, in O(depth), so that only the nodes on the way get built; their tree is open anyway. Everything
+    // else goes down through the wrapper's own nodes, which keeps working after the tree is closed.
     public MyNode nodeAtSpan(Span span) {
-        var root = root();
-        return lookupNodeBySpan(root, span);
+        MyNode node = null;
+        if (spanIndex != null)
+            node = spanIndex.exact(span);
+        else if (lazyTree != null)
+            node = findParsedNode(span);
+        if (node != null)
+            return node;
+        return lookupNodeBySpan(root(), span);
+    }
+
+    // Returns the smallest parsed node that contains the span, or null if the span is outside the tree.
+    public MyNode enclosingNode(Span span) {
+        if (spanIndex != null)
+            return spanIndex.enclosing(span);
+        if (!root.span().contains(span))
+            return null;
+        var node = root;
+        for (var descended = true; descended; ) {
+            descended = false;
+            for (var child : node.children()) {
+                if (!(child instanceof MergeNode) && child.span().contains(span)) {
+                    node = child;
+                    descended = true;
+                    break;
+                }
+            }
+        }
+        return node;
+    }
+
+    // Called by actions that add a node to the tree, so that its span can be looked up like the parsed ones.
+    public void nodeInserted(MyNode node) {
+        if (spanIndex != null)
+            spanIndex.add(node);
+    }
+
+    public boolean hasSpanIndex() {
+        return spanIndex != null;
+    }
+
+    public boolean isCompact() {
+        return compactTree != null;
+    }
+
+    public boolean isLazy() {
+        return lazyTree != null;
+    }
+
+    private MyNode findParsedNode(Span span) {
+        checkLazyTreeOpen();
+        var start = new Point(span.startRow(), span.startCol());
+        var end = new Point(span.endRow(), span.endCol());
+        var node = parsedNode(root.getInternalNode().getDescendantForPointRange(start, end));
+        if (node == null || !node.span().equals(span))
+            return null;
+        while (node.parent() != null && node.parent().span().equals(span))
+            node = node.parent();
+        return node;
+    }
+
+    // The smallest node that contains the position, e.g. to map a linter diagnostic's line and column to the
+    // syntax it points at. Rows and columns are zero-based, and columns are counted like the spans'. This asks
+    // tree-sitter, so the tree the wrapper was built from must still be open.
+    public MyNode nodeAt(int row, int column) {
+        checkLazyTreeOpen();
+        var point = new Point(row, column);
+        return parsedNode(root.getInternalNode().getDescendantForPointRange(point, point));
+    }
+
+    // Like `nodeAt`, but skips anonymous nodes such as punctuation.
+    public MyNode namedNodeAt(int row, int column) {
+        checkLazyTreeOpen();
+        var point = new Point(row, column);
+        return parsedNode(root.getInternalNode().getNamedDescendantForPointRange(point, point));
+    }
+
+    // Only lazy wrappers keep their tree, so that's the only case we can catch.
+    private void checkLazyTreeOpen() {
+        if (lazyTree != null && lazyTree.isClosed())
+            throw new IllegalStateException("The tree of this wrapper has been closed");
+    }
+
+    private MyNode parsedNode(Node node) {
+        if (lazyTree != null)
+            return lazyNode(node);
+        if (compactTree != null) {
+            int index = compactTree.indexOf(node);
+            return index < 0 ? null : compactTree.node(index);
+        }
+        if (nodesById == null) {
+            var byId = new HashMap<Long, MyNode>(nodes.length * 2);
+            for (var parsed : nodes)
+                byId.put(parsed.getInternalNode().getId(), parsed);
+            nodesById = byId;
+        }
+        return nodesById.get(node.getId());
+    }
+
+    // Finds a node of a lazy wrapper by going down from the root, which only builds the nodes on the way.
+    private MyNode lazyNode(Node node) {
+        var span = new Span(node.getRange());
+        var current = root;
+        while (current != null && current.getInternalNode().getId() != node.getId()) {
+            MyNode next = null;
+            for (var child : current.children()) {
+                if (!(child instanceof MergeNode) && child.span().contains(span)) {
+                    next = child;
+                    break;
+                }
+            }
+            current = next;
+        }
+        return current;
     }
 
     public MyNode root() {
         return root;
     }
 
-    private void buildTree(MyNode wrapperParent, Node nodeParent, String refString) {
-        if (nodeParent.isNull())
-            return;
-        var childCount = nodeParent.getChildCount();
-        for (var i = 0; i < childCount; i++) {
-            var currentChild = nodeParent.getChild(i);
-            MyNode childNode = new MyNode(currentChild, wrapperParent, refString);
-            wrapperParent.appendChild(childNode);
-            buildTree(childNode, currentChild, refString);
-        }
+    public Language language() {
+        return language;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    // The number of nodes in the tree this wrapper was built from.
+    public int nodeCount() {
+        if (nodeCount < 0)
+            nodeCount = lazyTree.getNodeCount();
+        return nodeCount;
+    }
+
+    // The number of nodes made from the tree so far: all of them, except in lazy wrappers, which make them as they're
+    // visited. Unlike `nodeCount` it never walks the tree, which is why the JFR events report this one.
+    public int builtNodeCount() {
+        return lazyTree != null ? lazyNodesBuilt : nodeCount;
+    }
+
+    Tree lazyTree() {
+        return lazyTree;
+    }
+
+    void lazyNodesBuilt(int count) {
+        lazyNodesBuilt += count;
+    }
+
+    public boolean hasErrors() {
+        return hasErrors;
+    }
+
+    // The encoding the tree was parsed from, which says what the nodes' byte offsets count.
+    public InputEncoding encoding() {
+        return encoding;
+    }
+
+    // The size of the source in bytes, in the encoding it was parsed from. It's what the JFR events report, like the
+    // parse event does.
+    public long sourceBytes() {
+        return encoding.byteLength(source);
     }
 
     private String toStringHelper(MyNode current, StringBuilder builder) {
@@ -67,7 +325,7 @@ public class TreeWrapper {
 
     public String generateSource() {
         try {
-            var sourceGenerator = new SourceGenerator(this.root);
+            var sourceGenerator = new SourceGenerator(this);
             return sourceGenerator.generate();
         } catch (IOException ioe) {
             throw new RuntimeException(ioe);
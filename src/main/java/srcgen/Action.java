@@ -1,5 +1,6 @@
 package srcgen;
 
+import mytree.Span;
 import mytree.TreeWrapper;
 
 import java.util.Objects;
@@ -12,5 +13,24 @@ public abstract class Action {
         this.tree = tree;
     }
 
-    abstract public void apply();
+    // Applies the action, and reports it to JFR when enabled.
+    public final void apply() {
+        var event = new ActionApplyEvent();
+        event.begin();
+        doApply();
+        event.end();
+        if (event.shouldCommit()) {
+            event.action = getClass().getSimpleName();
+            event.language = tree.language().toString();
+            event.inputSize = tree.sourceBytes();
+            event.nodeCount = tree.builtNodeCount();
+            event.hasErrors = tree.hasErrors();
+            event.commit();
+        }
+    }
+
+    // The span of the node the action works on, which fixes use to find out which of them conflict.
+    abstract public Span span();
+
+    abstract protected void doApply();
 }
@@ -0,0 +1,33 @@
+package srcgen;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("ai.serenade.treesitter.ActionApply")
+@Label("Action Apply")
+@Category("Tree-sitter")
+@Description("Applying an Action to a TreeWrapper")
+@Threshold("10 ms")
+final class ActionApplyEvent extends Event {
+    @Label("Action")
+    String action;
+
+    @Label("Language")
+    String language;
+
+    @Label("Input Size")
+    @DataAmount
+    long inputSize;
+
+    @Label("Node Count")
+    @Description("For a lazy TreeWrapper, only the nodes built so far")
+    int nodeCount;
+
+    @Label("Has Errors")
+    boolean hasErrors;
+}
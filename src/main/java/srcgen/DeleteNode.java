@@ -14,7 +14,12 @@ public class DeleteNode extends Action {
     }
 
     @Override
-    public void apply() {
+    public Span span() {
+        return span;
+    }
+
+    @Override
+    protected void doApply() {
         var node = tree.nodeAtSpan(span);
         node.setDeleted(true);
     }
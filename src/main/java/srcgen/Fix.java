@@ -1,5 +1,46 @@
 package srcgen;
 
+import mytree.TreeWrapper;
+
+import java.util.List;
+import java.util.Objects;
+
+// The actions that together fix one problem. `FixPlanner` accepts or rejects them as a whole.
 public class Fix {
+    private final String description;
+    private final List<Action> actions;
+
+    public Fix(String description, List<Action> actions) {
+        Objects.requireNonNull(actions);
+        if (actions.isEmpty())
+            throw new IllegalArgumentException("A fix needs at least one action");
+        this.description = description;
+        this.actions = List.copyOf(actions);
+    }
+
+    public Fix(String description, Action... actions) {
+        this(description, List.of(actions));
+    }
+
+    public String description() {
+        return description;
+    }
+
+    public List<Action> actions() {
+        return actions;
+    }
+
+    TreeWrapper tree() {
+        return actions.get(0).tree;
+    }
+
+    void apply() {
+        for (var action : actions)
+            action.apply();
+    }
 
+    @Override
+    public String toString() {
+        return description == null ? "fix" : description;
+    }
 }
@@ -0,0 +1,127 @@
+package srcgen;
+
+import mytree.Span;
+import mytree.TreeWrapper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Applies many fixes to a tree at once. Two fixes conflict when the spans of their actions overlap, since then
+// applying both would change the same code twice (or change code the other one looks up). Conflicts are found
+// with one sweep over the actions' spans sorted by start, the fixes are accepted in the order they're given unless
+// they conflict with one that was accepted before, and the accepted ones are applied in source order with a single
+// regeneration at the end.
+// Actions only mark and add nodes, so the spans of the parsed nodes don't move while the fixes are applied.
+public class FixPlanner {
+    private final TreeWrapper tree;
+
+    public FixPlanner(TreeWrapper tree) {
+        this.tree = tree;
+    }
+
+    // `rejected` overlaps `accepted`, which came first.
+    public record Conflict(Fix rejected, Fix accepted) {
+    }
+
+    private record Interval(int fix, long start, long end) {
+    }
+
+    // Positions are packed as row << 32 | column so that they compare as longs. Empty spans, such as those of
+    // missing nodes, are widened to the next column so that they still conflict with other actions in the same place.
+    private static Interval interval(int fix, Span span) {
+        long start = (long) span.startRow() << 32 | span.startCol();
+        long end = (long) span.endRow() << 32 | span.endCol();
+        return new Interval(fix, start, Math.max(end, start + 1));
+    }
+
+    public Plan plan(List<Fix> fixes) {
+        var intervals = new ArrayList<Interval>();
+        for (var i = 0; i < fixes.size(); i++) {
+            var fix = fixes.get(i);
+            if (fix.tree() != tree)
+                throw new IllegalArgumentException("The actions of " + fix + " are for another tree");
+            for (var action : fix.actions())
+                intervals.add(interval(i, action.span()));
+        }
+        intervals.sort(Comparator.comparingLong(Interval::start).thenComparingLong(Interval::end));
+
+        // The intervals that overlap the current one are those that started before it and haven't ended yet.
+        var conflicts = new BitSet[fixes.size()];
+        for (var i = 0; i < conflicts.length; i++)
+            conflicts[i] = new BitSet();
+        var active = new PriorityQueue<>(Comparator.comparingLong(Interval::end));
+        for (var interval : intervals) {
+            while (!active.isEmpty() && active.peek().end() <= interval.start())
+                active.poll();
+            for (var other : active) {
+                if (other.fix() != interval.fix()) {
+                    conflicts[interval.fix()].set(other.fix());
+                    conflicts[other.fix()].set(interval.fix());
+                }
+            }
+            active.add(interval);
+        }
+
+        var accepted = new BitSet();
+        var rejected = new ArrayList<Conflict>();
+        for (var i = 0; i < fixes.size(); i++) {
+            int first = conflicts[i].nextSetBit(0);
+            while (first >= 0 && !accepted.get(first))
+                first = conflicts[i].nextSetBit(first + 1);
+            if (first < 0)
+                accepted.set(i);
+            else
+                rejected.add(new Conflict(fixes.get(i), fixes.get(first)));
+        }
+
+        // Intervals are sorted by start, so the first interval of each fix says where it starts.
+        var ordered = new ArrayList<Fix>();
+        var seen = new BitSet();
+        for (var interval : intervals) {
+            if (accepted.get(interval.fix()) && !seen.get(interval.fix())) {
+                seen.set(interval.fix());
+                ordered.add(fixes.get(interval.fix()));
+            }
+        }
+        return new Plan(ordered, rejected);
+    }
+
+    public class Plan {
+        private final List<Fix> accepted;
+        private final List<Conflict> conflicts;
+        private boolean applied;
+
+        private Plan(List<Fix> accepted, List<Conflict> conflicts) {
+            this.accepted = accepted;
+            this.conflicts = conflicts;
+        }
+
+        // The fixes that will be applied, in source order.
+        public List<Fix> accepted() {
+            return accepted;
+        }
+
+        public List<Conflict> conflicts() {
+            return conflicts;
+        }
+
+        // Applies the accepted fixes to the tree without generating anything, e.g. to get
+        // `SpliceSourceGenerator.edits` afterwards.
+        public void applyActions() {
+            if (applied)
+                throw new IllegalStateException("The plan has already been applied");
+            applied = true;
+            for (var fix : accepted)
+                fix.apply();
+        }
+
+        // Applies the accepted fixes and returns the new source.
+        public String apply() {
+            applyActions();
+            return new SpliceSourceGenerator(tree).generate();
+        }
+    }
+}
@@ -25,14 +25,14 @@ public class InsertSibling extends Action {
         if (refNodeIndex == 0)
             return null;
         MyNode prevNode = childList.get(refNodeIndex - 1);
-        boolean isWhitespace = prevNode.getInternalNode().getType().equals("ws");
+        boolean isWhitespace = prevNode.type().equals("ws");
         return isWhitespace ? prevNode : null;
     }
 
     private MyNode getNewlineNodeBeforeRef(List<MyNode> childList, int refNodeIndex) {
         for (int i = refNodeIndex - 1; i >= 0; i--) {
             var thisNode = childList.get(i);
-            var type = thisNode.getInternalNode().getType();
+            var type = thisNode.type();
             if (type.equals("newline"))
                 return thisNode;
             if (!type.equals("ws"))
@@ -46,14 +46,14 @@ public class InsertSibling extends Action {
         if (refNodeIndex == childList.size() - 1)
             return null;
         MyNode nextNode = childList.get(refNodeIndex + 1);
-        boolean isWhitespace = nextNode.getInternalNode().getType().equals("ws");
+        boolean isWhitespace = nextNode.type().equals("ws");
         return isWhitespace ? nextNode : null;
     }
 
     private MyNode getNewlineNodeAfterRef(List<MyNode> childList, int refNodeIndex) {
         for (int i = refNodeIndex + 1; i < childList.size(); i++) {
             var thisNode = childList.get(i);
-            var type = thisNode.getInternalNode().getType();
+            var type = thisNode.type();
             if (type.equals("newline"))
                 return thisNode;
             if (!type.equals("ws"))
@@ -64,7 +64,12 @@ public class InsertSibling extends Action {
 
 
     @Override
-    public void apply() {
+    public Span span() {
+        return span;
+    }
+
+    @Override
+    protected void doApply() {
         var refNode = tree.nodeAtSpan(span);
         var parent = refNode.parent();
         int indexOfRefNode = parent.children().indexOf(refNode);
@@ -102,5 +107,6 @@ public class InsertSibling extends Action {
         }
 
         parent.children().add(insertPos, nodeToInsert);
+        tree.nodeInserted(nodeToInsert);
     }
 }
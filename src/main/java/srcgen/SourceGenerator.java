@@ -1,5 +1,7 @@
 package srcgen;
 
+import ai.serenade.treesitter.InputEncoding;
+import ai.serenade.treesitter.Metrics;
 import mytree.MergeNode;
 import mytree.MyNode;
 import mytree.Span;
@@ -13,7 +15,11 @@ import java.util.List;
 
 public class SourceGenerator {
     private final List<String> commonSourceLines;
+    // Where each line of the source starts, for slicing untouched subtrees. Made on first use.
+    private int[] lineStarts;
     private final MyNode node;
+    // The wrapper the root belongs to, if known. Only used to describe the work in JFR events.
+    private final TreeWrapper tree;
     record SourceSegment(MyNode node, String string, Span span) {
     }
 
@@ -24,7 +30,16 @@ public class SourceGenerator {
     };
 
     public SourceGenerator(MyNode root) throws IOException {
+        this(root, null);
+    }
+
+    public SourceGenerator(TreeWrapper tree) throws IOException {
+        this(tree.root(), tree);
+    }
+
+    private SourceGenerator(MyNode root, TreeWrapper tree) {
         this.node = root;
+        this.tree = tree;
         commonSourceLines = Arrays.stream(root.refString().split("\n")).toList();
     }
 
@@ -65,6 +80,25 @@ public class SourceGenerator {
         return builder.toString();
     }
 
+    // The source of a whole span, everything between its tokens included. Unlike `getLeafSource`, this works the
+    // same for spans over several lines, e.g. an untouched method body.
+    private String getSlice(Span span) {
+        var source = node.refString();
+        if (lineStarts == null) {
+            int lines = 1;
+            for (int i = 0; i < source.length(); i++) {
+                if (source.charAt(i) == '\n')
+                    lines++;
+            }
+            lineStarts = new int[lines];
+            for (int i = 0, line = 1; i < source.length(); i++) {
+                if (source.charAt(i) == '\n')
+                    lineStarts[line++] = i + 1;
+            }
+        }
+        return source.substring(lineStarts[span.startRow()] + span.startCol(), lineStarts[span.endRow()] + span.endCol());
+    }
+
     // Fixme: We need to find a spot for merge nodes in the tree.
     private void fixMergeNodeSpans(List<SourceSegment> sourceSegments) {
         for (var seg : sourceSegments) {
@@ -106,6 +140,13 @@ public class SourceGenerator {
             return;
         }
 
+        if (currentNode.isUntouched()) {
+            // Nothing in here has changed (only lazy trees know), so the source is what it was.
+            var segment = new SourceSegment(currentNode, getSlice(currentNode.span()), currentNode.span());
+            leafSourceSegments.add(segment);
+            return;
+        }
+
         if (currentNode.isLeaf()) {
             // This is a leaf node. Generate a source segment.
             var leafSource = getLeafSource(currentNode);
@@ -127,7 +168,23 @@ public class SourceGenerator {
     }
 
     public String generate() {
+        var event = new SourceGenerateEvent();
+        event.begin();
+        long start = Metrics.isEnabled() ? System.nanoTime() : 0;
         var srcSegments = getSourceSegments();
-        return sourceSegmentsToSource(srcSegments);
+        var source = sourceSegmentsToSource(srcSegments);
+        if (Metrics.isEnabled())
+            Metrics.recordSourceGeneration(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.language = tree == null ? null : tree.language().toString();
+            // Without a wrapper we don't know the encoding, and the source was most likely parsed as UTF-8.
+            event.inputSize = tree == null ? InputEncoding.UTF8.byteLength(node.refString()) : tree.sourceBytes();
+            if (tree != null)
+                event.nodeCount = tree.builtNodeCount();
+            event.hasErrors = tree != null && tree.hasErrors();
+            event.commit();
+        }
+        return source;
     }
 }
@@ -0,0 +1,266 @@
+package srcgen;
+
+import ai.serenade.treesitter.InputEncoding;
+import mytree.MergeNode;
+import mytree.MyNode;
+import mytree.TreeWrapper;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Regenerates the source by copying the original around the changes: the stretches that nothing touched are
+// written in bulk, deleted nodes are skipped and merged nodes spliced in. Unlike `SourceGenerator`, it works on the
+// nodes' byte offsets rather than rows and columns, so whitespace and comments between tokens are kept, and it
+// writes straight to a `Writer` or a channel instead of building the file from its tokens. Subtrees of lazy wrappers
+// that nothing touched aren't even visited, so a small fix costs little more than copying the file.
+// A merged node's offsets are taken to be in the same encoding as the main tree.
+public class SpliceSourceGenerator {
+    private final TreeWrapper tree;
+
+    public SpliceSourceGenerator(TreeWrapper tree) {
+        this.tree = tree;
+    }
+
+    private interface Output {
+        default void begin(Text source) {
+        }
+
+        void write(Text text, int from, int to) throws IOException;
+    }
+
+    public String generate() {
+        var writer = new StringWriter(tree.source().length());
+        try {
+            generate(writer);
+        } catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+        }
+        return writer.toString();
+    }
+
+    public void generate(Writer writer) throws IOException {
+        run((text, from, to) -> text.write(writer, from, to));
+    }
+
+    // Writes the source encoded as UTF-8.
+    public void generate(WritableByteChannel channel) throws IOException {
+        run((text, from, to) -> text.write(channel, from, to));
+    }
+
+    // The changes as edits to the original source instead of a new source, e.g. for a review bot or an LSP client:
+    // sorted, not overlapping, and with adjacent changes merged into one edit. See `TextEdit` for turning them into
+    // the edits for an incremental reparse.
+    public List<TextEdit> edits() {
+        var collector = new EditCollector();
+        try {
+            run(collector);
+        } catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+        }
+        return collector.finish();
+    }
+
+    private void run(Output output) throws IOException {
+        var event = new SourceGenerateEvent();
+        event.begin();
+        var texts = new IdentityHashMap<String, Text>();
+        boolean utf16 = tree.encoding() == InputEncoding.UTF16;
+        var text = texts.computeIfAbsent(tree.source(), source -> new Text(source, utf16));
+        output.begin(text);
+        var splice = new Splice(output, texts, utf16, text, 0);
+        splice.visit(tree.root());
+        splice.flush(text.length());
+        event.end();
+        if (event.shouldCommit()) {
+            event.language = tree.language().toString();
+            event.inputSize = tree.sourceBytes();
+            event.nodeCount = tree.builtNodeCount();
+            event.hasErrors = tree.hasErrors();
+            event.commit();
+        }
+    }
+
+    // Copies one source, from `written` on, with the changes made to its nodes.
+    private static final class Splice {
+        private final Output output;
+        private final Map<String, Text> texts;
+        private final boolean utf16;
+        private final Text text;
+        // Everything before `written` has been written out (or skipped), and everything before `due` has to be
+        // before whatever comes next.
+        private int written;
+        private int due;
+
+        Splice(Output output, Map<String, Text> texts, boolean utf16, Text text, int start) {
+            this.output = output;
+            this.texts = texts;
+            this.utf16 = utf16;
+            this.text = text;
+            this.written = start;
+            this.due = start;
+        }
+
+        void flush(int offset) throws IOException {
+            if (offset > written) {
+                output.write(text, written, offset);
+                written = offset;
+            }
+        }
+
+        // Writes a subtree that doesn't come from this stretch of the source, with its own changes.
+        private void insert(MyNode node, Text from) throws IOException {
+            flush(due);
+            var splice = new Splice(output, texts, utf16, from, node.startByte());
+            splice.visit(node);
+            splice.flush(node.endByte());
+        }
+
+        void visit(MyNode node) throws IOException {
+            if (node instanceof MergeNode mergeNode) {
+                var inserted = mergeNode.getNode();
+                if (!mergeNode.isDeleted())
+                    insert(inserted, texts.computeIfAbsent(inserted.refString(), source -> new Text(source, utf16)));
+                return;
+            }
+
+            int start = node.startByte();
+            int end = node.endByte();
+            if (start < due) {
+                // We're past this node already, so an action has added it again (`InsertSibling` does that with
+                // whitespace), and it's written again.
+                insert(node, text);
+                return;
+            }
+
+            if (node.isDeleted()) {
+                flush(start);
+                written = Math.max(written, end);
+                due = Math.max(due, end);
+                return;
+            }
+
+            if (node.isUntouched() || node.isLeaf()) {
+                due = end;
+                return;
+            }
+
+            due = start;
+            for (var child : node.children())
+                visit(child);
+            due = Math.max(due, end);
+        }
+    }
+
+    // Turns what the splice writes back into edits: the main source is copied in order, so a gap in it is a deletion
+    // and anything else written is an insertion where the copy got to.
+    private static final class EditCollector implements Output {
+        private final List<TextEdit> edits = new ArrayList<>();
+        private Text source;
+        private int copied;
+        // The edit being built, which the next change is merged into if it starts where this one ends.
+        private int start = -1;
+        private int end;
+        private final StringBuilder replacement = new StringBuilder();
+
+        @Override
+        public void begin(Text source) {
+            this.source = source;
+        }
+
+        @Override
+        public void write(Text text, int from, int to) {
+            if (text == source && from >= copied) {
+                if (from > copied)
+                    change(copied, from, "");
+                finishEdit();
+                copied = to;
+            } else {
+                change(copied, copied, text.slice(from, to));
+            }
+        }
+
+        private void change(int from, int to, String inserted) {
+            if (start >= 0 && end != from)
+                finishEdit();
+            if (start < 0) {
+                start = from;
+                end = from;
+            }
+            end = to;
+            replacement.append(inserted);
+        }
+
+        private void finishEdit() {
+            if (start < 0)
+                return;
+            edits.add(new TextEdit(start, end, replacement.toString()));
+            start = -1;
+            replacement.setLength(0);
+        }
+
+        List<TextEdit> finish() {
+            if (copied < source.length())
+                change(copied, source.length(), "");
+            finishEdit();
+            return edits;
+        }
+    }
+
+    // A source and what its offsets count.
+    private static final class Text {
+        private final String string;
+        private final boolean ascii;
+        // Offsets index `string` directly for UTF-16 trees, and also for UTF-8 ones as long as the source is ASCII.
+        private final boolean charOffsets;
+        // Made when needed: for UTF-8 offsets into a non-ASCII source, or to write ASCII to a channel.
+        private byte[] bytes;
+
+        Text(String string, boolean utf16) {
+            this.string = string;
+            var ascii = true;
+            for (int i = 0; i < string.length() && ascii; i++)
+                ascii = string.charAt(i) < 0x80;
+            this.ascii = ascii;
+            charOffsets = utf16 || ascii;
+            if (!charOffsets)
+                bytes = string.getBytes(StandardCharsets.UTF_8);
+        }
+
+        int length() {
+            return charOffsets ? string.length() : bytes.length;
+        }
+
+        String slice(int from, int to) {
+            return charOffsets ? string.substring(from, to) : new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        void write(Writer writer, int from, int to) throws IOException {
+            if (charOffsets)
+                writer.write(string, from, to - from);
+            else
+                writer.write(slice(from, to));
+        }
+
+        void write(WritableByteChannel channel, int from, int to) throws IOException {
+            ByteBuffer buffer;
+            if (!charOffsets || ascii) {
+                if (bytes == null)
+                    bytes = string.getBytes(StandardCharsets.US_ASCII);
+                buffer = ByteBuffer.wrap(bytes, from, to - from);
+            } else {
+                buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(string, from, to));
+            }
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package srcgen;
+
+import ai.serenade.treesitter.InputEdit;
+import ai.serenade.treesitter.InputEncoding;
+import ai.serenade.treesitter.Point;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Replaces `[startByte, endByte)` of the source with `replacement`. Offsets count like `MyNode.startByte`: bytes of
+// the UTF-8 source, or code units if the tree was parsed from UTF-16.
+// The helpers take edits as `SpliceSourceGenerator.edits` returns them: sorted and not overlapping.
+public record TextEdit(int startByte, int endByte, String replacement) {
+
+    public static String apply(String source, List<TextEdit> edits, InputEncoding encoding) {
+        if (encoding == InputEncoding.UTF16) {
+            var builder = new StringBuilder(source.length());
+            int copied = 0;
+            for (var edit : edits) {
+                builder.append(source, copied, edit.startByte).append(edit.replacement);
+                copied = edit.endByte;
+            }
+            return builder.append(source, copied, source.length()).toString();
+        }
+        var bytes = source.getBytes(StandardCharsets.UTF_8);
+        var output = new ByteArrayOutputStream(bytes.length);
+        int copied = 0;
+        for (var edit : edits) {
+            output.write(bytes, copied, edit.startByte - copied);
+            output.writeBytes(edit.replacement.getBytes(StandardCharsets.UTF_8));
+            copied = edit.endByte;
+        }
+        output.write(bytes, copied, bytes.length - copied);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    // The edits for `Tree.edit`, last first: applied in this order, each one is still in the coordinates of the
+    // original source, because only the edits before it change them. Edit the old tree with all of them, then parse
+    // the result of `apply` with it.
+    public static List<InputEdit> toInputEdits(String source, List<TextEdit> edits, InputEncoding encoding) {
+        boolean utf16 = encoding == InputEncoding.UTF16;
+        int[] lineStarts = lineStarts(source, utf16);
+        var inputEdits = new ArrayList<InputEdit>(edits.size());
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            var edit = edits.get(i);
+            var start = pointAt(lineStarts, edit.startByte);
+            var oldEnd = pointAt(lineStarts, edit.endByte);
+            int newEndByte = edit.startByte + length(edit.replacement, 0, edit.replacement.length(), utf16);
+            int lastNewline = edit.replacement.lastIndexOf('\n');
+            Point newEnd;
+            if (lastNewline < 0) {
+                newEnd = new Point(start.row, start.column + newEndByte - edit.startByte);
+            } else {
+                int rows = (int) edit.replacement.chars().filter(c -> c == '\n').count();
+                newEnd = new Point(start.row + rows,
+                        length(edit.replacement, lastNewline + 1, edit.replacement.length(), utf16));
+            }
+            inputEdits.add(new InputEdit(edit.startByte, edit.endByte, newEndByte, start, oldEnd, newEnd));
+        }
+        return inputEdits;
+    }
+
+    private static int length(String string, int from, int to, boolean utf16) {
+        if (utf16)
+            return to - from;
+        int length = 0;
+        for (int i = from; i < to; ) {
+            int codePoint = string.codePointAt(i);
+            length += utf8Length(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return length;
+    }
+
+    private static int utf8Length(int codePoint) {
+        return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private static int[] lineStarts(String source, boolean utf16) {
+        var starts = new int[16];
+        int lines = 1;
+        int offset = 0;
+        for (int i = 0; i < source.length(); ) {
+            int codePoint = source.codePointAt(i);
+            int chars = Character.charCount(codePoint);
+            offset += utf16 ? chars : utf8Length(codePoint);
+            i += chars;
+            if (codePoint == '\n') {
+                if (lines == starts.length)
+                    starts = Arrays.copyOf(starts, lines * 2);
+                starts[lines++] = offset;
+            }
+        }
+        return Arrays.copyOf(starts, lines);
+    }
+
+    private static Point pointAt(int[] lineStarts, int offset) {
+        int row = Arrays.binarySearch(lineStarts, offset);
+        if (row < 0)
+            row = -row - 2;
+        return new Point(row, offset - lineStarts[row]);
+    }
+}
@@ -0,0 +1,59 @@
+package ai.serenade.treesitter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class BatchParserTest extends TestBase {
+
+    @Test
+    void testOrderedDelivery() {
+        var executor = Executors.newFixedThreadPool(4);
+        try (ParserPool pool = new ParserPool()) {
+            // A tiny in-flight budget forces the submitter to wait for results to be consumed.
+            BatchParser batchParser = new BatchParser(pool, executor, 64, true);
+            List<String> names = new ArrayList<>();
+            var sources = IntStream.range(0, 200).mapToObj(i ->
+                    new BatchParser.Source("File" + i, "class File" + i + " { void m() { int x = " + i + "; } }", Languages.java()));
+            BatchParser.Stats stats = batchParser.parseSources(sources, result -> {
+                assertFalse(result.failed());
+                assertEquals("program", result.tree().getRootNode().getType());
+                names.add(result.name());
+            });
+            assertEquals(200, stats.files());
+            assertEquals(0, stats.failed());
+            for (int i = 0; i < 200; i++)
+                assertEquals("File" + i, names.get(i));
+            assert (stats.filesPerSecond() > 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testSourceSizesInBytes() {
+        var executor = Executors.newFixedThreadPool(2);
+        try (ParserPool pool = new ParserPool()) {
+            BatchParser batchParser = new BatchParser(pool, executor, 1 << 20, true);
+            String content = "class A { String s = \"\u00e9\u20ac\ud83d\ude00\"; }";
+            long expected = content.getBytes(StandardCharsets.UTF_8).length;
+            assertEquals(expected, InputEncoding.UTF8.byteLength(content));
+            assertEquals(2L * content.length(), InputEncoding.UTF16.byteLength(content));
+            BatchParser.Stats stats = batchParser.parseSources(Stream.of(new BatchParser.Source("A", content, Languages.java())),
+                    result -> {
+                        assertEquals(expected, result.bytes());
+                        result.tree().close();
+                    });
+            assertEquals(expected, stats.bytes());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
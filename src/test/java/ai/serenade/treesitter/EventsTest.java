@@ -0,0 +1,60 @@
+package ai.serenade.treesitter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import mytree.Span;
+import mytree.TreeWrapper;
+import org.junit.jupiter.api.Test;
+import srcgen.DeleteNode;
+
+public class EventsTest extends TestBase {
+    @Test
+    void testPipelineEvents() throws Exception {
+        String source = "class A { void f() { int x = 1; } } // \u00e9";
+        long bytes = source.getBytes(StandardCharsets.UTF_8).length;
+        var file = Files.createTempFile("events", ".jfr");
+        try (var recording = new Recording()) {
+            // The events have a threshold by default, and these phases are far quicker than that.
+            for (String name : List.of("Parse", "TreeWrap", "SourceGenerate", "ActionApply"))
+                recording.enable("ai.serenade.treesitter." + name).withoutThreshold();
+            recording.start();
+            try (Parser parser = new Parser()) {
+                parser.setLanguage(Languages.java());
+                try (Tree tree = parser.parseString(source)) {
+                    var wrapper = new TreeWrapper(tree, source);
+                    new DeleteNode(wrapper, new Span(new Range(0, 21, 0, 31))).apply();
+                    assertEquals("class A { void f() {  } } // \u00e9", wrapper.generateSource());
+                }
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        var events = RecordingFile.readAllEvents(file).stream()
+                .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+        Files.delete(file);
+
+        RecordedEvent parse = events.get("ai.serenade.treesitter.Parse").get(0);
+        assertEquals(Language.of(Languages.java()).toString(), parse.getString("language"));
+        assertEquals(bytes, parse.getLong("inputSize"));
+        int nodeCount = parse.getInt("nodeCount");
+        assertTrue(nodeCount > 1);
+        assertFalse(parse.getBoolean("hasErrors"));
+
+        assertEquals(nodeCount, events.get("ai.serenade.treesitter.TreeWrap").get(0).getInt("nodeCount"));
+        assertEquals(nodeCount, events.get("ai.serenade.treesitter.SourceGenerate").get(0).getInt("nodeCount"));
+        // Every event reports the input in bytes.
+        for (String name : List.of("TreeWrap", "SourceGenerate", "ActionApply"))
+            assertEquals(bytes, events.get("ai.serenade.treesitter." + name).get(0).getLong("inputSize"));
+        assertEquals("DeleteNode", events.get("ai.serenade.treesitter.ActionApply").get(0).getString("action"));
+    }
+}
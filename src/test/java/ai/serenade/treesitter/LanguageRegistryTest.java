@@ -0,0 +1,46 @@
+package ai.serenade.treesitter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+public class LanguageRegistryTest extends TestBase {
+    @Test
+    void testLoadOnFirstUse() throws UnsupportedEncodingException {
+        var registry = new LanguageRegistry(null);
+        assertTrue(registry.forExtension("java").isEmpty());
+
+        // The test library has the Java grammar linked in, so it can stand in for a grammar-only library.
+        registry.register("java", Path.of(System.getenv("JAVA_TREE_SITTER")), "jav");
+        assertFalse(registry.isLoaded("java"));
+        var language = registry.forPath(Path.of("src", "Thing.java")).orElseThrow();
+        assertTrue(registry.isLoaded("java"));
+        assertEquals(Languages.java(), language.getPointer());
+        assertEquals("java", language.getName());
+        assertEquals(language, registry.forExtension("JAV").orElseThrow());
+        assertEquals(language.getPointer(), registry.resolve(Path.of("Thing.java")));
+        assertEquals(0, registry.resolve(Path.of("thing.py")));
+        assertEquals(0, registry.resolve(Path.of("Makefile")));
+
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(language.getPointer());
+            try (Tree tree = parser.parseString("class A {}")) {
+                assertEquals("java", tree.getLanguage().getName());
+            }
+        }
+    }
+
+    @Test
+    void testMissingLibrary() {
+        var registry = new LanguageRegistry(Path.of("does-not-exist"));
+        assertThrows(IllegalArgumentException.class, () -> registry.get("python"));
+        registry.register("python", Path.of("does-not-exist", "libtree-sitter-python.so"));
+        assertThrows(RuntimeException.class, () -> registry.get("python"));
+        assertFalse(registry.isLoaded("python"));
+    }
+}
@@ -0,0 +1,49 @@
+package ai.serenade.treesitter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import org.junit.jupiter.api.Test;
+
+// The test task runs with metrics enabled.
+public class MetricsTest extends TestBase {
+    @Test
+    void testParseMetrics() throws UnsupportedEncodingException {
+        assertTrue(Metrics.isEnabled());
+        var before = Metrics.snapshot();
+        String source = "class A { void f() { int x = 1; } }";
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (Tree tree = parser.parseString(source)) {
+                var during = Metrics.snapshot();
+                assertEquals(before.liveParsers() + 1, during.liveParsers());
+                assertEquals(before.liveTrees() + 1, during.liveTrees());
+                assertEquals(before.parses() + 1, during.parses());
+                assertEquals(before.bytesParsed() + source.length(), during.bytesParsed());
+
+                int size = tree.export().size();
+                assertEquals(before.nodesProduced() + size, Metrics.snapshot().nodesProduced());
+            }
+        }
+        var after = Metrics.snapshot();
+        assertEquals(before.liveParsers(), after.liveParsers());
+        assertEquals(before.liveTrees(), after.liveTrees());
+        assertTrue(after.jniCalls().getOrDefault("parserParseBytesUTF8", 0L) > before.jniCalls().getOrDefault("parserParseBytesUTF8", 0L));
+        // Keyed by the grammar's name rather than the language pointer, which changes from run to run.
+        assertTrue(after.parseLatencyByLanguage().containsKey("java"));
+    }
+
+    @Test
+    void testHistogram() {
+        var histogram = new Metrics.Histogram();
+        for (int i = 0; i < 99; i++)
+            histogram.record(10_000);
+        histogram.record(5_000_000);
+        var snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.count());
+        assertEquals(16, snapshot.percentileMicros(0.5));
+        assertEquals(16, snapshot.percentileMicros(0.99));
+        assertEquals(5001, snapshot.percentileMicros(1.0));
+    }
+}
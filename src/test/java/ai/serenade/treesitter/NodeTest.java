@@ -1,9 +1,17 @@
 package ai.serenade.treesitter;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.UnsupportedEncodingException;
+import mytree.MyNode;
+import mytree.Span;
+import mytree.TreeWrapper;
 import org.junit.jupiter.api.Test;
+import srcgen.DeleteNode;
 
 public class NodeTest extends TestBase {
 
@@ -37,4 +45,150 @@ public class NodeTest extends TestBase {
         }
       }
     }
+
+    @Test
+    void testSymbolsAndFields() throws UnsupportedEncodingException {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (Tree tree = parser.parseString("public class Thing extends Object { }")) {
+                Language language = tree.getLanguage();
+                assertEquals(language, Language.of(Languages.java()));
+
+                Node classDecl = tree.getRootNode().getChild(0);
+                assertEquals(language.symbolId("class_declaration"), classDecl.getSymbol());
+                assert (language.getSymbolName(classDecl.getSymbol()) == classDecl.getType().intern());
+
+                int superclassField = language.fieldId("superclass");
+                assert (superclassField > 0);
+                assertEquals("superclass", language.getFieldName(superclassField));
+                assertEquals("superclass", classDecl.getChildByFieldId(superclassField).getType());
+                assertEquals(0, language.fieldId("no_such_field"));
+                assertEquals(-1, language.symbolId("no_such_symbol"));
+            }
+        }
+    }
+
+    @Test
+    void testExport() throws UnsupportedEncodingException {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (Tree tree = parser.parseString("class A { int b = (c); }")) {
+                FlatTree flat = tree.export();
+                Node root = tree.getRootNode();
+                assertEquals(-1, flat.getParent(0));
+                assertEquals(root.getEndByte(), flat.getEndByte(0));
+                assertEquals(root.getNodeString(), flat.getNode(0).getNodeString());
+
+                // Walk the tree through JNI and check every node against the exported record at the same index.
+                int[] index = {0};
+                assertExported(flat, root, -1, index);
+                assertEquals(flat.size(), index[0]);
+            }
+        }
+    }
+
+    private void assertExported(FlatTree flat, Node node, int parent, int[] index) {
+        int current = index[0]++;
+        assertEquals(parent, flat.getParent(current));
+        assertEquals(node.getType(), flat.getNode(current).getType());
+        assertEquals(node.getStartByte(), flat.getStartByte(current));
+        assertEquals(node.getEndByte(), flat.getEndByte(current));
+        assertEquals(node.getRange().toString(), flat.getRange(current).toString());
+        assertEquals(node.isNamed(), flat.isNamed(current));
+        for (int i = 0; i < node.getChildCount(); i++) {
+            assertExported(flat, node.getChild(i), current, index);
+        }
+    }
+
+    @Test
+    void testDescendantLookup() throws UnsupportedEncodingException {
+        String source = "class A { void f() { int x = 1; } }";
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (Tree tree = parser.parseString(source)) {
+                Node root = tree.getRootNode();
+                Node x = root.getDescendantForByteRange(25, 26);
+                assertEquals("identifier", x.getType());
+                assertEquals(25, x.getStartByte());
+                assertEquals("=", root.getDescendantForPointRange(new Point(0, 27), new Point(0, 28)).getType());
+                assertEquals("variable_declarator",
+                        root.getNamedDescendantForPointRange(new Point(0, 27), new Point(0, 28)).getType());
+                assertEquals("variable_declarator", root.getNamedDescendantForByteRange(25, 30).getType());
+                assertEquals("class_declaration", root.getFirstNamedChildForByte(3).getType());
+
+                var wrapper = new TreeWrapper(tree, source);
+                var declaration = wrapper.nodeAtSpan(new Span(new Range(0, 21, 0, 31)));
+                assertEquals("local_variable_declaration", declaration.getInternalNode().getType());
+                assertEquals(x.getId(), wrapper.nodeAt(0, 25).getInternalNode().getId());
+                assertEquals("variable_declarator", wrapper.namedNodeAt(0, 27).getInternalNode().getType());
+                assertThrows(RuntimeException.class, () -> wrapper.nodeAtSpan(new Span(new Range(0, 22, 0, 26))));
+            }
+        }
+    }
+
+    @Test
+    void testSpanIndex() throws UnsupportedEncodingException {
+        String source = "class A {\n  void f() {\n    int x = 1;\n    g(x);\n  }\n}\n";
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            TreeWrapper indexed;
+            MyNode x;
+            MyNode declarator;
+            MyNode statement;
+            try (Tree tree = parser.parseString(source)) {
+                var flat = tree.export();
+                var plain = new TreeWrapper(flat, source);
+                indexed = new TreeWrapper(flat, source, true);
+                assertTrue(indexed.hasSpanIndex());
+                for (var i = 0; i < flat.size(); i++) {
+                    var span = new Span(flat.getRange(i));
+                    assertEquals(plain.nodeAtSpan(span).getInternalNode().getId(),
+                            indexed.nodeAtSpan(span).getInternalNode().getId());
+                    assertEquals(plain.enclosingNode(span).getInternalNode().getId(),
+                            indexed.enclosingNode(span).getInternalNode().getId());
+                }
+                assertEquals("variable_declarator",
+                        plain.enclosingNode(new Span(new Range(2, 8, 2, 13))).getInternalNode().getType());
+                // Node types come from the native tree, so they're checked while it's open.
+                x = indexed.enclosingNode(new Span(new Range(2, 8, 2, 9)));
+                assertEquals("identifier", x.getInternalNode().getType());
+                declarator = indexed.enclosingNode(new Span(new Range(2, 8, 2, 13)));
+                assertEquals("variable_declarator", declarator.getInternalNode().getType());
+                statement = indexed.nodeAtSpan(new Span(new Range(3, 4, 3, 9)));
+                assertEquals("expression_statement", statement.getInternalNode().getType());
+            }
+
+            // The index doesn't need the native tree, and deleting nodes doesn't change what it finds.
+            assertSame(x, indexed.enclosingNode(new Span(new Range(2, 8, 2, 9))));
+            assertSame(declarator, indexed.enclosingNode(new Span(new Range(2, 8, 2, 13))));
+            assertSame(statement, indexed.nodeAtSpan(new Span(new Range(3, 4, 3, 9))));
+            new DeleteNode(indexed, statement.span()).apply();
+            assertSame(statement, indexed.nodeAtSpan(statement.span()));
+            assertNull(indexed.enclosingNode(new Span(new Range(7, 0, 7, 1))));
+            assertThrows(RuntimeException.class, () -> indexed.nodeAtSpan(new Span(new Range(2, 9, 2, 12))));
+        }
+    }
+
+    @Test
+    void testSpanLookupAfterClose() throws UnsupportedEncodingException {
+        String source = "class A { void f() { int x = 1; } }";
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            TreeWrapper plain;
+            TreeWrapper lazy;
+            MyNode declaration;
+            try (Tree tree = parser.parseString(source)) {
+                plain = new TreeWrapper(tree, source);
+                lazy = TreeWrapper.lazy(tree, source);
+                declaration = plain.nodeAtSpan(new Span(new Range(0, 21, 0, 31)));
+                assertEquals("local_variable_declaration", declaration.type());
+                tree.close();
+                assertTrue(tree.isClosed());
+            }
+            // Plain wrappers search their own nodes, lazy ones need the tree and say so.
+            assertSame(declaration, plain.nodeAtSpan(new Span(new Range(0, 21, 0, 31))));
+            assertThrows(IllegalStateException.class, () -> lazy.nodeAtSpan(new Span(new Range(0, 21, 0, 31))));
+            assertThrows(IllegalStateException.class, () -> lazy.nodeAt(0, 25));
+        }
+    }
 }
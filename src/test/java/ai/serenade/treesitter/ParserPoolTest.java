@@ -0,0 +1,96 @@
+package ai.serenade.treesitter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class ParserPoolTest extends TestBase {
+
+    @Test
+    void testReuse() throws Exception {
+        try (ParserPool pool = new ParserPool(2, Duration.ofMinutes(1))) {
+            Parser first;
+            try (ParserPool.Lease lease = pool.lease(Languages.java())) {
+                first = lease.parser();
+                try (Tree tree = first.parseString("class A {}")) {
+                    assertEquals("program", tree.getRootNode().getType());
+                }
+            }
+            try (ParserPool.Lease lease = pool.lease(Languages.java())) {
+                assertSame(first, lease.parser());
+            }
+            ParserPool.Stats stats = pool.getStats();
+            assertEquals(2, stats.leases());
+            assertEquals(2, stats.returns());
+            assertEquals(1, stats.created());
+            assertEquals(0, stats.leased());
+            assertEquals(1, stats.idle());
+        }
+    }
+
+    @Test
+    void testIdleLimit() {
+        try (ParserPool pool = new ParserPool(1, Duration.ofMinutes(1))) {
+            ParserPool.Lease a = pool.lease(Languages.java());
+            ParserPool.Lease b = pool.lease(Languages.java());
+            a.close();
+            // Over the idle limit, so this one is closed right away.
+            b.close();
+            assertEquals(1, pool.getStats().idle());
+            assertEquals(1, pool.getStats().evicted());
+        }
+    }
+
+    @Test
+    void testLanguageChangedWhileLeased() throws Exception {
+        try (ParserPool pool = new ParserPool(2, Duration.ofMinutes(1))) {
+            try (ParserPool.Lease lease = pool.lease(Languages.java())) {
+                lease.parser().setLanguage(0);
+            }
+            // The parser no longer parses Java, so it must not be handed out for it again.
+            assertEquals(0, pool.getStats().idle());
+            try (ParserPool.Lease lease = pool.lease(Languages.java());
+                 Tree tree = lease.parser().parseString("class A {}")) {
+                assertEquals("program", tree.getRootNode().getType());
+            }
+        }
+    }
+
+    @Test
+    void testEviction() {
+        try (ParserPool pool = new ParserPool(1, Duration.ZERO)) {
+            pool.lease(Languages.java()).close();
+            // Everything is too old right away, and returning a parser runs an eviction pass.
+            assertEquals(0, pool.getStats().idle());
+            assertEquals(1, pool.getStats().evicted());
+            assertEquals(0, pool.evictIdle());
+        }
+    }
+
+    @Test
+    void testConcurrentLeases() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (ParserPool pool = new ParserPool()) {
+            var futures = new ArrayList<Future<String>>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit(() -> {
+                    try (ParserPool.Lease lease = pool.lease(Languages.java());
+                         Tree tree = lease.parser().parseString("class A { void b() {} }")) {
+                        return tree.getRootNode().getChild(0).getType();
+                    }
+                }));
+            }
+            for (var future : futures)
+                assertEquals("class_declaration", future.get());
+            assert (pool.getStats().created() <= 4);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
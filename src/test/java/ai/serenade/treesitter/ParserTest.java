@@ -1,10 +1,22 @@
 package ai.serenade.treesitter;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeSpec;
@@ -14,7 +26,12 @@ import mytree.Span;
 import mytree.TreeWrapper;
 import org.junit.jupiter.api.Test;
 import srcgen.Action;
+import srcgen.DeleteNode;
+import srcgen.Fix;
+import srcgen.FixPlanner;
 import srcgen.InsertSibling;
+import srcgen.SpliceSourceGenerator;
+import srcgen.TextEdit;
 
 import javax.lang.model.element.Modifier;
 
@@ -32,6 +49,231 @@ public class ParserTest extends TestBase {
         }
     }
 
+    @Test
+    void testParseMappedFileAndDirectBuffer() throws Exception {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            var path = Paths.get("./src/test/java/ai/serenade/treesitter/TestFile.java");
+            byte[] bytes = Files.readAllBytes(path);
+            var direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+            try (Tree fromString = parser.parseString(Files.readString(path));
+                 Tree fromPath = parser.parse(path);
+                 Tree fromBuffer = parser.parse(direct)) {
+                assertEquals(fromString.getRootNode().getNodeString(), fromPath.getRootNode().getNodeString());
+                assertEquals(fromString.getRootNode().getNodeString(), fromBuffer.getRootNode().getNodeString());
+                assertEquals(bytes.length, fromPath.getRootNode().getEndByte());
+            }
+        }
+    }
+
+    @Test
+    void testParseFilesAroundMapThreshold() throws Exception {
+        var big = new StringBuilder("class Big {\n");
+        while (big.length() <= Parser.MAP_THRESHOLD)
+            big.append("    int field").append(big.length()).append(";\n");
+        var sources = List.of(big.append("}\n").toString(), "class Small { int a; }\n", "");
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            // The big file is mapped, and the smaller ones reuse one buffer, so nothing of a longer file is left over.
+            for (String source : sources) {
+                var file = Files.createTempFile("parse", ".java");
+                try {
+                    Files.writeString(file, source);
+                    try (Tree expected = parser.parseString(source); Tree fromPath = parser.parse(file)) {
+                        assertEquals(expected.getRootNode().getNodeString(), fromPath.getRootNode().getNodeString());
+                        assertEquals(source.length(), fromPath.getRootNode().getEndByte());
+                    }
+                } finally {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testParseStreams() throws Exception {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            // Large enough to span many chunks and slide the window of a stream several times.
+            var builder = new StringBuilder("class Big {\n");
+            for (int i = 0; i < 20000; i++)
+                builder.append("    int field").append(i).append(" = ").append(i).append(";\n");
+            String source = builder.append("}\n").toString();
+            byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+            try (Tree expected = parser.parseString(source);
+                 Tree fromStream = parser.parse(new ByteArrayInputStream(bytes));
+                 var channel = new SeekableInMemoryChannel(bytes);
+                 Tree fromChannel = parser.parse(channel)) {
+                assertEquals(expected.getRootNode().getNodeString(), fromStream.getRootNode().getNodeString());
+                assertEquals(expected.getRootNode().getNodeString(), fromChannel.getRootNode().getNodeString());
+            }
+        }
+    }
+
+    // Just enough of a SeekableByteChannel to read from a byte array.
+    private static class SeekableInMemoryChannel implements SeekableByteChannel {
+        private final byte[] bytes;
+        private long position;
+
+        SeekableInMemoryChannel(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        public int read(ByteBuffer dst) {
+            if (position >= bytes.length)
+                return -1;
+            int count = (int) Math.min(dst.remaining(), bytes.length - position);
+            dst.put(bytes, (int) position, count);
+            position += count;
+            return count;
+        }
+
+        public int write(ByteBuffer src) {
+            throw new UnsupportedOperationException();
+        }
+
+        public long position() {
+            return position;
+        }
+
+        public SeekableByteChannel position(long newPosition) {
+            position = newPosition;
+            return this;
+        }
+
+        public long size() {
+            return bytes.length;
+        }
+
+        public SeekableByteChannel truncate(long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+    }
+
+    @Test
+    void testParseUtf16() {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            String source = "class A {\n    String s = \"h\u00e9llo \u20ac\";\n}\n";
+            try (Tree tree = parser.parseUtf16(source)) {
+                assertEquals(InputEncoding.UTF16, tree.getEncoding());
+                FlatTree flat = tree.export();
+                assertEquals(source.length(), flat.getEndByte(0));
+                boolean found = false;
+                for (int i = 0; i < flat.size(); i++) {
+                    if (flat.getType(i).equals("string_literal")) {
+                        // Offsets and columns are string indices, even with non-ASCII characters.
+                        assertEquals("\"h\u00e9llo \u20ac\"", source.substring(flat.getStartByte(i), flat.getEndByte(i)));
+                        assertEquals(source.split("\n")[1].indexOf('"'), flat.getStartColumn(i));
+                        found = true;
+                    }
+                }
+                assert (found);
+            }
+        }
+    }
+
+    @Test
+    void testUtf16OffsetsAgreeEverywhere() {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            String source = "class A {\n    String s = \"h\u00e9llo \u20ac\"; int b;\n}\n";
+            try (Tree tree = parser.parseUtf16(source)) {
+                FlatTree flat = tree.export();
+                int index = -1;
+                for (int i = 0; i < flat.size() && index < 0; i++) {
+                    if (flat.getType(i).equals("string_literal"))
+                        index = i;
+                }
+                int start = flat.getStartByte(index);
+                int end = flat.getEndByte(index);
+
+                Node node = tree.getRootNode().getDescendantForByteRange(start, end);
+                assertEquals("string_literal", node.getType());
+                assertEquals(start, node.getStartByte());
+                assertEquals(end, node.getEndByte());
+                assertEquals(flat.getRange(index).startCol, node.getRange().startCol);
+                Range range = node.getRange();
+                Node byPoint = tree.getRootNode().getDescendantForPointRange(
+                        new Point(range.startRow, range.startCol), new Point(range.endRow, range.endCol));
+                assertEquals(node.getId(), byPoint.getId());
+                // Nodes found from this one keep reporting code units.
+                assertEquals(start, node.getParent().getChild(node.getParent().getChildCount() - 1).getStartByte());
+
+                int intIndex = source.indexOf("int");
+                try (TreeWalker walker = tree.getRootNode().walker()) {
+                    while (walker.hasNext()) {
+                        WalkNode walked = walker.next();
+                        if (walked.getType().equals("integral_type"))
+                            assertEquals(intIndex, walked.getStartByte());
+                    }
+                }
+
+                try (Query query = new Query(Languages.java(), "(string_literal) @s");
+                     QueryCursor cursor = new QueryCursor()) {
+                    QueryCaptures captures = new QueryCaptures();
+                    cursor.setByteRange(start, end);
+                    cursor.exec(query, tree.getRootNode());
+                    assertTrue(cursor.nextCaptures(captures));
+                    assertEquals(start, captures.getStartByte(0));
+                    assertEquals(end, captures.getEndByte(0));
+                    assertEquals(end, captures.getNode(0).getEndByte());
+                }
+
+                MyNode wrapped = TreeWrapper.lazy(tree, source).namedNodeAt(range.startRow, range.startCol);
+                assertEquals("\"h\u00e9llo \u20ac\"", source.substring(wrapped.startByte(), wrapped.endByte()));
+            }
+        }
+    }
+
+    // Point of an offset in an ASCII source.
+    private Point pointAt(String source, int offset) {
+        int row = 0;
+        int lineStart = 0;
+        for (int i = 0; i < offset; i++) {
+            if (source.charAt(i) == '\n') {
+                row++;
+                lineStart = i + 1;
+            }
+        }
+        return new Point(row, offset - lineStart);
+    }
+
+    private String reparseAfterReplace(Parser parser, String source, int start, int end, String replacement) throws Exception {
+        String newSource = source.substring(0, start) + replacement + source.substring(end);
+        int newEnd = start + replacement.length();
+        try (Tree oldTree = parser.parseString(source)) {
+            oldTree.edit(new InputEdit(start, end, newEnd, pointAt(source, start), pointAt(source, end), pointAt(newSource, newEnd)));
+            try (Tree reused = parser.parseString(oldTree, newSource); Tree fresh = parser.parseString(newSource)) {
+                assertEquals(fresh.getRootNode().getNodeString(), reused.getRootNode().getNodeString());
+                assertEquals(fresh.getRootNode().getEndByte(), reused.getRootNode().getEndByte());
+                return reused.getRootNode().getNodeString();
+            }
+        }
+    }
+
+    @Test
+    void testIncrementalParse() throws Exception {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            String source = "class A {\n    void b() {\n        c();\n    }\n}\n";
+            int afterCall = source.indexOf("c();") + "c();".length();
+            // Insert a statement on a new line.
+            reparseAfterReplace(parser, source, afterCall, afterCall, "\n        d(1);");
+            // Delete the only statement.
+            reparseAfterReplace(parser, source, source.indexOf("c();"), afterCall, "");
+            // Rename the method.
+            reparseAfterReplace(parser, source, source.indexOf("b()"), source.indexOf("b()") + 1, "renamed");
+        }
+    }
+
     private void depthFirstWalk(Node rootNode) {
         try (var treeCursor = rootNode.walk()) {
             while (treeCursor.hasNext()) {
@@ -203,6 +445,184 @@ public class ParserTest extends TestBase {
         }
     }
 
+    @Test
+    public void fixMultipleOnCompactTree() throws Exception {
+        try (var parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            String program = Files.readString(Paths.get("./src/test/java/ai/serenade/treesitter/TestFile.java"));
+            try (var tree = parser.parseString(program)) {
+                var flatTree = tree.export();
+                var mainTree = new TreeWrapper(flatTree, program);
+                var compactTree = new TreeWrapper(flatTree, program, true, true);
+                assertTrue(compactTree.isCompact());
+                assertEquals(mainTree.toString(), compactTree.toString());
+
+                removeCastExpression(mainTree);
+                insertCalls(parser, mainTree);
+                removeCastExpression(compactTree);
+                insertCalls(parser, compactTree);
+                assertEquals(mainTree.generateSource(), compactTree.generateSource());
+
+                // Views are thrown away, but what's appended to them is kept by the tree.
+                var root = compactTree.root();
+                assertEquals(root.span(), compactTree.root().span());
+                assertEquals("program", root.type());
+                int childCount = root.children().size();
+                root.appendChild(new MyNode(tree.getRootNode(), root, program));
+                assertEquals(childCount + 1, compactTree.root().children().size());
+            }
+        }
+    }
+
+    @Test
+    public void lazyTreeCopiesUntouchedSubtrees() throws Exception {
+        String program = "class A {\n  long f() {\n    return (long) 1;\n  }\n\n  void g() {\n    h( 1,  2 );\n  }\n}\n";
+        try (var parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (var tree = parser.parseString(program)) {
+                var lazyTree = TreeWrapper.lazy(tree, program);
+                assertTrue(lazyTree.isLazy());
+                var root = tree.getRootNode();
+                assertEquals(program.substring(root.getStartByte(), root.getEndByte()), lazyTree.generateSource());
+
+                var cast = lazyTree.nodeAtSpan(new Span(new Range(2, 11, 2, 19)));
+                assertEquals("cast_expression", cast.getInternalNode().getType());
+                for (var child : cast.children()) {
+                    if (!child.getInternalNode().getType().equals("decimal_integer_literal"))
+                        child.setDeleted(true);
+                }
+                var g = lazyTree.nodeAtSpan(new Span(new Range(5, 2, 7, 3)));
+                assertTrue(g.isUntouched());
+                assertFalse(lazyTree.root().isUntouched());
+
+                var source = lazyTree.generateSource();
+                assertFalse(source.contains("(long) 1"));
+                assertTrue(source.contains("1;"));
+                assertTrue(source.contains("void g() {\n    h( 1,  2 );\n  }"));
+                // g's body was never visited, so its nodes weren't made.
+                assertTrue(lazyTree.builtNodeCount() < lazyTree.nodeCount());
+            }
+        }
+    }
+
+    @Test
+    public void lazyTreeSeesBulkChildChanges() throws Exception {
+        String program = "class A {\n  void g() {\n    h( 1,  2 );\n  }\n}\n";
+        try (var parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (var tree = parser.parseString(program)) {
+                var lazyTree = TreeWrapper.lazy(tree, program);
+                var g = lazyTree.nodeAtSpan(new Span(new Range(1, 2, 3, 3)));
+                assertEquals("method_declaration", g.type());
+                assertTrue(g.children().removeIf(child -> child.type().equals("formal_parameters")));
+                assertFalse(g.isUntouched());
+                assertFalse(lazyTree.generateSource().contains("g()"));
+            }
+        }
+    }
+
+    @Test
+    public void spliceKeepsEverythingButTheChanges() throws Exception {
+        String program = "// \u00c7\u00e0 et l\u00e0\nclass A {\n  long f() {\n    return (long) 1; // cast\n  }\n}\n";
+        String expected = program.replace("(long)", "");
+        try (var parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (var tree = parser.parseString(program)) {
+                for (var wrapper : List.of(new TreeWrapper(tree, program), TreeWrapper.lazy(tree, program))) {
+                    assertEquals(program, new SpliceSourceGenerator(wrapper).generate());
+                    var cast = wrapper.nodeAtSpan(new Span(new Range(3, 11, 3, 19)));
+                    for (var child : cast.children()) {
+                        if (!child.getInternalNode().getType().equals("decimal_integer_literal"))
+                            child.setDeleted(true);
+                    }
+                    assertEquals(expected, new SpliceSourceGenerator(wrapper).generate());
+
+                    var bytes = new ByteArrayOutputStream();
+                    new SpliceSourceGenerator(wrapper).generate(Channels.newChannel(bytes));
+                    assertEquals(expected, bytes.toString(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void editsFeedAnIncrementalReparse() throws Exception {
+        String program = "// \u00c7\u00e0 et l\u00e0\nclass A {\n  long f() {\n    return (long) 1; // cast\n  }\n}\n";
+        String expected = program.replace("(long)", "");
+        int castStart = program.substring(0, program.indexOf("(long)")).getBytes(StandardCharsets.UTF_8).length;
+        try (var parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (var tree = parser.parseString(program)) {
+                var wrapper = TreeWrapper.lazy(tree, program);
+                var cast = wrapper.nodeAtSpan(new Span(new Range(3, 11, 3, 19)));
+                for (var child : cast.children()) {
+                    if (!child.getInternalNode().getType().equals("decimal_integer_literal"))
+                        child.setDeleted(true);
+                }
+                var edits = new SpliceSourceGenerator(wrapper).edits();
+                assertEquals(List.of(new TextEdit(castStart, castStart + 6, "")), edits);
+                assertEquals(expected, TextEdit.apply(program, edits, InputEncoding.UTF8));
+
+                try (var edited = tree.copy()) {
+                    for (var edit : TextEdit.toInputEdits(program, edits, InputEncoding.UTF8))
+                        edited.edit(edit);
+                    try (var reparsed = parser.parseString(edited, expected);
+                         var parsed = parser.parseString(expected)) {
+                        assertEquals(parsed.getRootNode().getNodeString(), reparsed.getRootNode().getNodeString());
+                    }
+                }
+            }
+        }
+
+        var inputEdit = TextEdit.toInputEdits("ab\ncd", List.of(new TextEdit(4, 5, "x\n\u00e9")), InputEncoding.UTF8).get(0);
+        assertEquals(1, inputEdit.startPoint.row);
+        assertEquals(1, inputEdit.startPoint.column);
+        assertEquals(8, inputEdit.newEndByte);
+        assertEquals(2, inputEdit.newEndPoint.row);
+        assertEquals(2, inputEdit.newEndPoint.column);
+    }
+
+    @Test
+    public void planFixesAndRegenerateOnce() throws Exception {
+        try (var parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            String program = Files.readString(Paths.get("./src/test/java/ai/serenade/treesitter/TestFile.java"));
+            try (var tree = parser.parseString(program)) {
+                var sequential = new TreeWrapper(tree, program);
+                removeCastExpression(sequential);
+                insertCalls(parser, sequential);
+
+                var planned = new TreeWrapper(tree, program, true);
+                var castSpan = new Span(new Range(7, 24, 7, 52));
+                var castActions = new ArrayList<Action>();
+                for (var child : planned.nodeAtSpan(castSpan).children()) {
+                    var type = child.getInternalNode().getType();
+                    if (type.equals("(") || type.equals(")") || type.equals("generic_type"))
+                        castActions.add(new DeleteNode(planned, child.span()));
+                }
+                var removeCast = new Fix("Remove the cast", castActions);
+                var deleteCast = new Fix("Delete the cast expression", new DeleteNode(planned, castSpan));
+
+                var soutSpan = new Span(new Range(8, 12, 8, 41));
+                var soutNodeParent = planned.nodeAtSpan(soutSpan).parent();
+                String callStmtString = generateStatement("callMe()");
+                var partialTree = new TreeWrapper(generatePartialTree(parser, callStmtString), callStmtString);
+                var callNodeSpan = new Span(new Range(2, 4, 2, 13));
+                var insertCalls = new Fix("Call callMe() around the print",
+                        new InsertSibling(planned, soutSpan, new MergeNode(partialTree.nodeAtSpan(callNodeSpan),
+                                soutNodeParent, callStmtString, true, soutSpan), true),
+                        new InsertSibling(planned, soutSpan, new MergeNode(partialTree.nodeAtSpan(callNodeSpan),
+                                soutNodeParent, callStmtString, true, soutSpan), false));
+
+                var plan = new FixPlanner(planned).plan(List.of(removeCast, deleteCast, insertCalls));
+                assertEquals(List.of(removeCast, insertCalls), plan.accepted());
+                assertEquals(List.of(new FixPlanner.Conflict(deleteCast, removeCast)), plan.conflicts());
+                assertEquals(new SpliceSourceGenerator(sequential).generate(), plan.apply());
+                assertThrows(IllegalStateException.class, plan::apply);
+            }
+        }
+    }
+
     private MyNode getNameNode(Parser parser) throws Exception {
         String prog = "superTest();";
         var tree = parser.parseString(prog);
@@ -230,4 +650,40 @@ public class ParserTest extends TestBase {
             System.out.println(mainTree.generateSource());
         }
     }
+
+    @Test
+    void testTimeoutAndCancellation() throws UnsupportedEncodingException {
+        var source = new StringBuilder("class A {\n");
+        for (int i = 0; i < 5000; i++)
+            source.append("  int f").append(i).append("() { return ").append(i).append(" * 2; }\n");
+        String program = source.append("}\n").toString();
+
+        try (Parser parser = new Parser(); CancellationFlag flag = new CancellationFlag()) {
+            parser.setLanguage(Languages.java());
+            String expected;
+            try (Tree tree = parser.parseString(program)) {
+                expected = tree.getRootNode().getNodeString();
+            }
+
+            parser.setCancellationFlag(flag);
+            flag.cancel();
+            var cancelled = assertThrows(ParseAbortedException.class, () -> parser.parseString(program));
+            assertEquals(ParseAbortedException.Reason.CANCELLED, cancelled.getReason());
+            // Clearing the flag resumes the parse.
+            flag.clear();
+            try (Tree tree = parser.parseString(program)) {
+                assertEquals(expected, tree.getRootNode().getNodeString());
+            }
+
+            parser.setTimeoutMicros(1);
+            assertEquals(1, parser.getTimeoutMicros());
+            var timedOut = assertThrows(ParseAbortedException.class, () -> parser.parseString(program));
+            assertEquals(ParseAbortedException.Reason.TIMED_OUT, timedOut.getReason());
+            parser.setTimeoutMicros(0);
+            try (Tree tree = parser.parseString(program)) {
+                assertEquals(expected, tree.getRootNode().getNodeString());
+            }
+            parser.setCancellationFlag(null);
+        }
+    }
 }
@@ -0,0 +1,72 @@
+package ai.serenade.treesitter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+
+public class QueryTest extends TestBase {
+    private static final String TEST_FILE = "./src/test/java/ai/serenade/treesitter/TestFile.java";
+
+    @Test
+    void testFindCastExpression() throws Exception {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (Tree tree = parser.parseString(Files.readString(Paths.get(TEST_FILE)));
+                 QueryCursor cursor = new QueryCursor()) {
+                Query query = Query.compile(Languages.java(), "(cast_expression type: (_) @type) @cast");
+                cursor.exec(query, tree.getRootNode());
+                QueryCaptures captures = new QueryCaptures();
+                assert (cursor.nextMatches(captures));
+                assertEquals(2, captures.size());
+                assertEquals("cast", query.getCaptureName(captures.getCaptureIndex(0)));
+                assertEquals("[(7, 24), (7, 52)]", captures.getRange(0).toString());
+                assertEquals("cast_expression", captures.getNode(0).getType());
+                assertEquals("type", query.getCaptureName(captures.getCaptureIndex(1)));
+                assertEquals("generic_type", captures.getNode(1).getType());
+                assertEquals(captures.getMatchId(0), captures.getMatchId(1));
+                assert (!cursor.nextMatches(captures));
+            }
+        }
+    }
+
+    @Test
+    void testCapturesInBatches() throws Exception {
+        try (Parser parser = new Parser()) {
+            parser.setLanguage(Languages.java());
+            try (Tree tree = parser.parseString(Files.readString(Paths.get(TEST_FILE)));
+                 QueryCursor cursor = new QueryCursor()) {
+                Query query = Query.compile(Languages.java(), "(method_declaration name: (identifier) @name)");
+                cursor.exec(query, tree.getRootNode());
+                // A batch of one forces a native call per capture.
+                QueryCaptures captures = new QueryCaptures(1);
+                int count = 0;
+                int lastStart = -1;
+                while (cursor.nextCaptures(captures)) {
+                    assertEquals(1, captures.size());
+                    assert (captures.getStartByte(0) > lastStart);
+                    lastStart = captures.getStartByte(0);
+                    count++;
+                }
+                assertEquals(3, count);
+            }
+        }
+    }
+
+    @Test
+    void testCompileIsCached() {
+        Query first = Query.compile(Languages.java(), "(identifier) @id");
+        assertSame(first, Query.compile(Languages.java(), "(identifier) @id"));
+        assertEquals(1, first.getCaptureCount());
+        assertEquals(0, first.getCaptureIndex("id"));
+    }
+
+    @Test
+    void testInvalidQuery() {
+        QueryException error = assertThrows(QueryException.class, () -> new Query(Languages.java(), "(not_a_node) @x"));
+        assertEquals(1, error.getOffset());
+    }
+}
@@ -1,8 +1,14 @@
 package ai.serenade.treesitter;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Test;
 
 public class TreeCursorTest extends TestBase {
@@ -49,4 +55,119 @@ public class TreeCursorTest extends TestBase {
       }
     }
   }
+
+  @Test
+  void testCursorNodesMatchExport() throws UnsupportedEncodingException {
+    try (Parser parser = new Parser()) {
+      parser.setLanguage(Languages.java());
+      try (Tree tree = parser.parseString("class A { int f(int x) { return x; } }")) {
+        FlatTree flat = tree.export();
+        Language language = tree.getLanguage();
+        try (TreeCursor cursor = tree.getRootNode().walk()) {
+          int index = 0;
+          while (cursor.hasNext()) {
+            TreeCursorNode node = cursor.next();
+            // Types and field names are the language's interned strings.
+            assertSame(flat.getType(index), node.getType());
+            assertSame(language.getFieldName(flat.getFieldId(index)), node.getName());
+            assertEquals(flat.getStartByte(index), node.getStartByte());
+            assertEquals(flat.getEndByte(index), node.getEndByte());
+            assertEquals(flat.getRange(index).toString(), node.getRange().toString());
+            index++;
+          }
+          assertEquals(flat.size(), index);
+        }
+      }
+    }
+  }
+
+  @Test
+  void testWalker() throws UnsupportedEncodingException {
+    try (Parser parser = new Parser()) {
+      parser.setLanguage(Languages.java());
+      try (Tree tree = parser.parseString("public class Thing { public static void main() { System.out.println('a'); } }")) {
+        FlatTree flat = tree.export();
+
+        // Pre-order matches the order of the exported tree, across several small batches.
+        try (TreeWalker walker = new TreeWalker(tree.getRootNode(), TreeWalker.Order.PREORDER, 3)) {
+          int index = 0;
+          while (walker.hasNext()) {
+            WalkNode node = walker.next();
+            assertEquals(flat.getType(index), node.getType());
+            assertEquals(flat.getStartByte(index), node.getStartByte());
+            assertEquals(flat.getFieldId(index), node.getFieldId());
+            index++;
+          }
+          assertEquals(flat.size(), index);
+        }
+
+        // Post-order visits every node once, children before parents, and ends with the root.
+        try (TreeWalker walker = tree.getRootNode().walker(TreeWalker.Order.POSTORDER)) {
+          int count = 0;
+          int lastDepth = 0;
+          String lastType = null;
+          while (walker.hasNext()) {
+            WalkNode node = walker.next();
+            assert (node.getDepth() >= lastDepth - 1);
+            lastDepth = node.getDepth();
+            lastType = node.getType();
+            count++;
+          }
+          assertEquals(flat.size(), count);
+          assertEquals(0, lastDepth);
+          assertEquals("program", lastType);
+        }
+      }
+    }
+  }
+
+  @Test
+  void testConcurrentReadersOfCopies() throws Exception {
+    var source = new StringBuilder("class A {\n");
+    for (int i = 0; i < 500; i++)
+      source.append("  int f").append(i).append("(int x) { return x + ").append(i).append("; }\n");
+    source.append("}\n");
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try (Parser parser = new Parser()) {
+      parser.setLanguage(Languages.java());
+      try (Tree tree = parser.parseString(source.toString())) {
+        String expected = describe(tree);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+          Tree copy = tree.copy();
+          results.add(executor.submit(() -> {
+            try (copy) {
+              return describe(copy);
+            }
+          }));
+        }
+        for (Future<String> result : results)
+          assertEquals(expected, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  // Every node's type and byte range, in cursor order.
+  private static String describe(Tree tree) {
+    var builder = new StringBuilder();
+    try (TreeCursor cursor = tree.getRootNode().walk()) {
+      boolean more = true;
+      while (more) {
+        Node node = cursor.getCurrentNode();
+        builder.append(node.getType()).append(node.getStartByte()).append('-').append(node.getEndByte()).append(' ');
+        if (cursor.gotoFirstChild())
+          continue;
+        while (!cursor.gotoNextSibling()) {
+          if (!cursor.gotoParent()) {
+            more = false;
+            break;
+          }
+        }
+      }
+    }
+    return builder.toString();
+  }
 }